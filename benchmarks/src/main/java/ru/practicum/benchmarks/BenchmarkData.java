@@ -0,0 +1,68 @@
+package ru.practicum.benchmarks;
+
+import ru.practicum.evmsevice.enums.EventState;
+import ru.practicum.evmsevice.model.Category;
+import ru.practicum.evmsevice.model.Compilation;
+import ru.practicum.evmsevice.model.Event;
+import ru.practicum.evmsevice.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Тестовые данные бенчмарков, близкие по размеру к данным сервиса
+ */
+public class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    public static Event event(int id) {
+        Category category = new Category();
+        category.setId(id % 20 + 1);
+        category.setName("Категория " + category.getId());
+        User initiator = new User();
+        initiator.setId(id % 100 + 1);
+        initiator.setName("Пользователь " + initiator.getId());
+        initiator.setEmail("user" + initiator.getId() + "@mail.ru");
+
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle("Событие номер " + id);
+        event.setAnnotation("Краткое описание события номер " + id + " для проверки преобразования");
+        event.setDescription("Полное описание события номер " + id
+                + ", которое обычно в несколько раз длиннее краткого описания события.");
+        event.setCategory(category);
+        event.setInitiator(initiator);
+        event.setCreatedOn(LocalDateTime.of(2025, 7, 1, 12, 0));
+        event.setEventDate(LocalDateTime.of(2025, 8, 1, 18, 30));
+        event.setPublishedOn(LocalDateTime.of(2025, 7, 2, 9, 15));
+        event.setLat(55.75f);
+        event.setLon(37.62f);
+        event.setPaid(id % 2 == 0);
+        event.setParticipantLimit(100);
+        event.setRequestModeration(true);
+        event.setState(EventState.PUBLISHED);
+        event.setConfirmedRequests(id % 50);
+        event.setViews(id * 3);
+        return event;
+    }
+
+    public static List<Event> events(int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            events.add(event(i));
+        }
+        return events;
+    }
+
+    public static Compilation compilation(int size) {
+        Compilation compilation = new Compilation();
+        compilation.setId(1);
+        compilation.setTitle("Подборка");
+        compilation.setPinned(true);
+        compilation.setEvents(new LinkedHashSet<>(events(size)));
+        return compilation;
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск событий по тексту (GET /events?text=): полнотекстовый поиск по индексу ix_events_search_vector
+ * в порядке даты и релевантности и прежний поиск по подстроке (ewm.search.full-text=false).
+ * Запросы повторяют SQL, который Hibernate строит для EventSpecification.textMatches
+ * и annotetionContains/descriptionContains.
+ * Схема ewm-service создается миграциями Flyway в базе, заданной свойствами bench.db.url,
+ * bench.db.username и bench.db.password, недостающие события добавляются при первом запуске.
+ * Слово "фестиваль" есть в каждом тысячном событии, "концерт" - в каждом десятом,
+ * "регата" не встречается.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EventSearchBenchmark {
+    private static final String TITLE_PREFIX = "bench-search ";
+    private static final int SEED_CHUNK = 100_000;
+    private static final int PAGE_SIZE = 10;
+
+    private static final String SQL_SEED = """
+            INSERT INTO events (annotation, category_id, createdon, description, eventdate, initiator_id,
+                                paid, participantlimit, publishedon, requestmoderation, state, title)
+            SELECT w[1 + g % 50] || ' ' || w[1 + (g / 50) % 50] || ' ' || w[1 + (g / 2500) % 50]
+                       || CASE WHEN g % 1000 = 0 THEN ' фестиваль' ELSE '' END
+                       || CASE WHEN g % 10 = 0 THEN ' концерт' ELSE '' END
+                       || ' ' || repeat(w[1 + (g * 7) % 50] || ' ', 20),
+                   ?, now(),
+                   repeat(w[1 + (g * 13) % 50] || ' ' || w[1 + (g * 17) % 50] || ' ', 40),
+                   now() + ((g::bigint * 7919) % 1000000) * interval '1 minute', ?,
+                   false, 0, now(), false, 'PUBLISHED', ? || g
+            FROM generate_series(?, ?) g,
+                 (SELECT ARRAY['встреча', 'город', 'музыка', 'вечер', 'выставка', 'лекция', 'прогулка',
+                               'театр', 'спектакль', 'кино', 'книга', 'друзья', 'парк', 'мастер', 'класс',
+                               'игра', 'турнир', 'ужин', 'кухня', 'вино', 'танцы', 'йога', 'утро', 'поход',
+                               'река', 'лес', 'гора', 'море', 'история', 'искусство', 'наука', 'техника',
+                               'программирование', 'дизайн', 'фотография', 'живопись', 'поэзия', 'литература',
+                               'семья', 'дети', 'спорт', 'бег', 'велосипед', 'шахматы', 'кофе', 'чай',
+                               'праздник', 'ярмарка', 'рынок', 'экскурсия'] AS w) words
+            """;
+    // столбец документа, который читает FullTextSearchFunctionContributor
+    private static final String DOCUMENT = "search_vector";
+    private static final String SQL_FULL_TEXT = "SELECT id FROM events WHERE " + DOCUMENT
+            + " @@ plainto_tsquery('russian', ?) AND eventdate >= ? ORDER BY eventdate, id LIMIT " + PAGE_SIZE;
+    private static final String SQL_FULL_TEXT_RANKED = "SELECT id FROM events WHERE " + DOCUMENT
+            + " @@ plainto_tsquery('russian', ?) AND eventdate >= ?"
+            + " ORDER BY ts_rank(" + DOCUMENT + ", plainto_tsquery('russian', ?)) DESC, id LIMIT " + PAGE_SIZE;
+    private static final String SQL_LIKE = "SELECT id FROM events WHERE (annotation LIKE ? OR description LIKE ?)"
+            + " AND eventdate >= ? ORDER BY eventdate, id LIMIT " + PAGE_SIZE;
+
+    @Param({"1000000"})
+    private int events;
+
+    @Param({"фестиваль", "концерт", "регата"})
+    private String text;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("bench.db.url", "jdbc:postgresql://localhost:5432/ewmdb"));
+        dataSource.setUsername(System.getProperty("bench.db.username", "ewmdb"));
+        dataSource.setPassword(System.getProperty("bench.db.password", "ewmdb"));
+        // как в application.properties ewm-service
+        dataSource.addDataSourceProperty("options", "-c plan_cache_mode=force_custom_plan");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbc = new JdbcTemplate(dataSource);
+
+        Integer seeded = jdbc.queryForObject("SELECT count(*) FROM events WHERE title LIKE ?", Integer.class,
+                TITLE_PREFIX + "%");
+        if (seeded < events) {
+            jdbc.update("INSERT INTO users (name, email) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                    "bench-search", "bench-search@example.com");
+            jdbc.update("INSERT INTO categories (name) VALUES (?) ON CONFLICT DO NOTHING", "bench-search");
+            Integer userId = jdbc.queryForObject("SELECT id FROM users WHERE email = ?", Integer.class,
+                    "bench-search@example.com");
+            Integer categoryId = jdbc.queryForObject("SELECT id FROM categories WHERE name = ?", Integer.class,
+                    "bench-search");
+            for (int from = seeded + 1; from <= events; from += SEED_CHUNK) {
+                jdbc.update(SQL_SEED, categoryId, userId, TITLE_PREFIX, from, Math.min(events, from + SEED_CHUNK - 1));
+            }
+            jdbc.execute("ANALYZE events");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Integer> fullText() {
+        return jdbc.queryForList(SQL_FULL_TEXT, Integer.class, text, now());
+    }
+
+    @Benchmark
+    public List<Integer> fullTextRanked() {
+        return jdbc.queryForList(SQL_FULL_TEXT_RANKED, Integer.class, text, now(), text);
+    }
+
+    @Benchmark
+    public List<Integer> like() {
+        return jdbc.queryForList(SQL_LIKE, Integer.class, "%" + text + "%", "%" + text + "%", now());
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+}
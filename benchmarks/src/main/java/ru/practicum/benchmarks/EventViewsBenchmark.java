@@ -0,0 +1,147 @@
+package ru.practicum.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import ru.practicum.evmsevice.client.EventViewsCache;
+import ru.practicum.evmsevice.client.StatsClient;
+import ru.practicum.evmsevice.enums.HitOverflowPolicy;
+import ru.practicum.evmsevice.model.Event;
+import ru.practicum.evmsevice.service.EventServiceImpl;
+import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполнение событий сведениями о просмотрах.
+ * Сравнивается прежний обмен с сервером статистики (строка uris в url и разбор
+ * uri каждой записи ответа) с запросом POST /stats/query и ответом из пар чисел.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventViewsBenchmark {
+    private static final String PREFIX_EVENTS = "/events/";
+
+    @Param({"10", "1000"})
+    private int eventCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Event> events;
+    private List<Integer> eventIds;
+    private byte[] legacyResponse;
+    private byte[] pairsResponse;
+    private EventViewsCache viewsCache;
+    private EventServiceImpl eventService;
+
+    @Setup
+    public void setup() throws Exception {
+        events = BenchmarkData.events(eventCount);
+        eventIds = events.stream().map(Event::getId).toList();
+        List<StatsDto> statsDtos = new ArrayList<>();
+        List<int[]> pairs = new ArrayList<>();
+        Map<Integer, Integer> views = new HashMap<>();
+        for (Integer eventId : eventIds) {
+            statsDtos.add(new StatsDto("ewm-main-service", PREFIX_EVENTS + eventId, eventId * 3));
+            pairs.add(new int[]{eventId, eventId * 3});
+            views.put(eventId, eventId * 3);
+        }
+        legacyResponse = objectMapper.writeValueAsBytes(statsDtos);
+        pairsResponse = objectMapper.writeValueAsBytes(pairs);
+
+        viewsCache = new EventViewsCache(new FixedViewsStatsClient(views), 3600, 100_000, 500);
+        eventService = new EventServiceImpl(null, null, null, null, viewsCache, new SimpleMeterRegistry());
+        // кэш заполняется заранее: измеряется путь запроса без обращения к серверу статистики
+        viewsCache.getViews(eventIds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        viewsCache.shutdown();
+    }
+
+    @Benchmark
+    public List<Event> updateViewsFromCache() {
+        eventService.updateViwesAndRequests(events);
+        return events;
+    }
+
+    @Benchmark
+    public String legacyBuildUris() {
+        StringBuilder urisBuilder = new StringBuilder(PREFIX_EVENTS + eventIds.getFirst());
+        for (int i = 1; i < eventIds.size(); i++) {
+            urisBuilder.append(",").append(PREFIX_EVENTS).append(eventIds.get(i));
+        }
+        return urisBuilder.toString();
+    }
+
+    @Benchmark
+    public byte[] queryBuildBody() throws Exception {
+        return objectMapper.writeValueAsBytes(new StatsQueryDto(PREFIX_EVENTS, eventIds, true, null, null));
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> legacyParseResponse() throws Exception {
+        List<StatsDto> statsDtos = objectMapper.readValue(legacyResponse, new TypeReference<List<StatsDto>>() {
+        });
+        Map<Integer, Integer> views = new HashMap<>();
+        for (StatsDto dto : statsDtos) {
+            views.put(Integer.parseInt(dto.getUri().split("/")[2]), dto.getHits());
+        }
+        return views;
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> queryParseResponse() throws Exception {
+        int[][] pairs = objectMapper.readValue(pairsResponse, int[][].class);
+        Map<Integer, Integer> views = new HashMap<>();
+        for (int[] pair : pairs) {
+            views.put(pair[0], pair[1]);
+        }
+        return views;
+    }
+
+    /**
+     * Клиент статистики без сетевых вызовов
+     */
+    private static class FixedViewsStatsClient extends StatsClient {
+        private final Map<Integer, Integer> views;
+
+        FixedViewsStatsClient(Map<Integer, Integer> views) {
+            super("http://localhost:9090", 1, 1, 1, HitOverflowPolicy.DROP, 1, 100, 5000, false,
+                    100, 100, 1, 5, 1000, new RestTemplateBuilder(), new SimpleMeterRegistry());
+            this.views = views;
+        }
+
+        @Override
+        public Map<Integer, Integer> getEventViewsByIds(Collection<Integer> eventIds, Boolean unique) {
+            Map<Integer, Integer> result = new HashMap<>();
+            for (Integer eventId : eventIds) {
+                result.put(eventId, views.get(eventId));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.evmsevice.dto.CompilationDto;
+import ru.practicum.evmsevice.dto.EventFullDto;
+import ru.practicum.evmsevice.dto.EventShortDto;
+import ru.practicum.evmsevice.mapper.CompilationMapper;
+import ru.practicum.evmsevice.mapper.EventMapper;
+import ru.practicum.evmsevice.model.Compilation;
+import ru.practicum.evmsevice.model.Event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование событий и подборок в объекты ответа
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    @Param({"10", "100"})
+    private int compilationSize;
+
+    private Event event;
+    private Compilation compilation;
+
+    @Setup
+    public void setup() {
+        event = BenchmarkData.event(1);
+        compilation = BenchmarkData.compilation(compilationSize);
+    }
+
+    @Benchmark
+    public EventFullDto eventToFullDto() {
+        return EventMapper.toFullDto(event);
+    }
+
+    @Benchmark
+    public EventShortDto eventToShortDto() {
+        return EventMapper.toShortDto(event);
+    }
+
+    @Benchmark
+    public CompilationDto compilationToDto() {
+        return CompilationMapper.toCompilationDto(compilation);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Проверка планов горячих запросов ewm-service по EXPLAIN.
+ * Запросы повторяют SQL, который Hibernate строит для методов EventRepository, RequestRepository,
+ * CommentRepository, CompilationRepository, EventSpecification и сортировки по просмотрам.
+ * Запросы планируются при enable_seqscan = off: планировщик выбирает последовательное чтение
+ * только если ни один индекс не подходит, поэтому проверка не зависит от объема данных в базе.
+ * В каждом запросе оставлено только условие, которое должен обслуживать проверяемый индекс:
+ * на пустой таблице при нескольких условиях планировщик может выбрать любой из подходящих индексов.
+ * План не должен содержать Seq Scan и должен использовать ожидаемый индекс.
+ * Схема создается миграциями Flyway в базе, заданной свойствами bench.db.url,
+ * bench.db.username и bench.db.password. При нарушении программа завершается с кодом 1.
+ */
+public class QueryPlanCheck {
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private static final List<PlanCase> CASES = List.of(
+            new PlanCase("поиск событий по дате (EventSpecification.eventDateAfter)",
+                    "SELECT e.id FROM events e WHERE e.eventdate >= ? ORDER BY e.eventdate, e.id LIMIT 10",
+                    "ix_events_eventdate_id", now()),
+            new PlanCase("поиск событий администратором по состоянию (EventSpecification.eventStateIn)",
+                    "SELECT e.id FROM events e WHERE e.state IN ('PUBLISHED', 'CANCELED')",
+                    "ix_events_state_eventdate"),
+            new PlanCase("опубликованные события (EventRepository.findPublishedEventIds)",
+                    "SELECT e.id FROM events e WHERE e.state = 'PUBLISHED'",
+                    "ix_events_state_eventdate"),
+            new PlanCase("события категории (EventRepository.findEventsByCategory_Id)",
+                    "SELECT e.id FROM events e WHERE e.category_id = ?",
+                    "ix_events_category_id", 1),
+            new PlanCase("события инициатора (EventRepository.findEventsByInitiator_Id)",
+                    "SELECT e.id FROM events e WHERE e.initiator_id = ?",
+                    "ix_events_initiator_id", 1),
+            new PlanCase("полнотекстовый поиск (EventSpecification.textMatches)",
+                    "SELECT e.id FROM events e WHERE e.search_vector @@ plainto_tsquery('russian', ?)",
+                    "ix_events_search_vector", "концерт"),
+            new PlanCase("сортировка по просмотрам (EventRepositoryCustom.findPageOrderByViews)",
+                    "SELECT e.id FROM events e JOIN event_views v ON v.event_id = e.id"
+                            + " WHERE e.state = 'PUBLISHED' ORDER BY v.views DESC, v.event_id LIMIT 10",
+                    "ix_event_views_views"),
+            new PlanCase("заявки события (RequestRepository.findAllByEvent_Id)",
+                    "SELECT r.id FROM requests r WHERE r.event_id = ?",
+                    "ix_requests_event_id_status", 1),
+            new PlanCase("подтвержденные заявки события (пересчет confirmed_requests)",
+                    "SELECT COUNT(*) FROM requests r WHERE r.event_id = ? AND r.status = 'CONFIRMED'",
+                    "ix_requests_event_id_status", 1),
+            new PlanCase("заявки пользователя (RequestRepository.findAllByRequester_Id)",
+                    "SELECT r.id FROM requests r WHERE r.requester_id = ?",
+                    "unique_requester_event", 1),
+            new PlanCase("события подборок (CompilationRepository.findAllWithEventsByIdInOrderById)",
+                    "SELECT l.event_id FROM eventlinks l WHERE l.compilation_id IN (?, ?)",
+                    "ix_eventlinks_compilation_id", 1, 2),
+            new PlanCase("комментарии события (CommentRepository.findAllByEventId)",
+                    "SELECT c.id FROM comments c WHERE c.event_id = ? AND c.state = 'PUBLISHED'"
+                            + " ORDER BY c.created_on",
+                    "ix_comments_event_id_state_created_on", 1),
+            new PlanCase("комментарии автора (CommentRepository.findAllByAuthor_Id)",
+                    "SELECT c.id FROM comments c WHERE c.author_id = ?",
+                    "ix_comments_author_id", 1));
+
+    public static void main(String[] args) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("bench.db.url", "jdbc:postgresql://localhost:5432/ewmdb"));
+        dataSource.setUsername(System.getProperty("bench.db.username", "ewmdb"));
+        dataSource.setPassword(System.getProperty("bench.db.password", "ewmdb"));
+        // plan_cache_mode как в application.properties ewm-service
+        dataSource.addDataSourceProperty("options", "-c plan_cache_mode=force_custom_plan -c enable_seqscan=off");
+        int failed = 0;
+        try (dataSource) {
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            for (PlanCase planCase : CASES) {
+                List<String> problems = planCase.check(jdbc);
+                System.out.printf("%s: %s%n", planCase.name(), problems.isEmpty() ? "OK" : String.join("; ", problems));
+                if (!problems.isEmpty()) {
+                    failed++;
+                }
+            }
+        }
+        System.out.printf("Проверено запросов %d, с нарушениями %d.%n", CASES.size(), failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    /**
+     * Проверяемый запрос
+     *
+     * @param name  - описание запроса для отчета
+     * @param sql   - текст запроса
+     * @param index - индекс, который должен использовать план
+     * @param args  - параметры запроса
+     */
+    private record PlanCase(String name, String sql, String index, Object... args) {
+
+        /**
+         * @return - список нарушений, пустой, если план соответствует ожиданиям
+         */
+        List<String> check(JdbcTemplate jdbc) {
+            String plan = String.join("\n", jdbc.queryForList("EXPLAIN " + sql, String.class, args));
+            List<String> problems = new ArrayList<>();
+            Matcher matcher = SEQ_SCAN.matcher(plan);
+            while (matcher.find()) {
+                problems.add("Seq Scan on " + matcher.group(1));
+            }
+            if (!plan.contains(index)) {
+                problems.add("не используется индекс " + index);
+            }
+            if (!problems.isEmpty()) {
+                problems.add("план:\n" + plan);
+            }
+            return problems;
+        }
+    }
+}
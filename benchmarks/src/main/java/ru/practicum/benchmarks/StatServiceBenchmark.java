@@ -0,0 +1,96 @@
+package ru.practicum.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
+import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.ViewStats;
+import ru.practicum.statsvc.repository.StatStorage;
+import ru.practicum.statsvc.service.StatServiceImpl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка запросов статистики без обращения к базе данных:
+ * разбор периода, параметров и преобразование результата
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatServiceBenchmark {
+    private static final int URI_COUNT = 10;
+
+    private StatServiceImpl statService;
+    private List<String> uris;
+    private StatsQueryDto query;
+
+    @Setup
+    public void setup() {
+        List<ViewStats> viewStats = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        uris = new ArrayList<>();
+        for (int i = 1; i <= URI_COUNT; i++) {
+            viewStats.add(new ViewStats("ewm-main-service", "/events/" + i, i * 3));
+            uris.add("/events/" + i);
+            ids.add(i);
+        }
+        statService = new StatServiceImpl(new FixedStatStorage(viewStats));
+        query = new StatsQueryDto("/events/", ids, true, "2025-01-01 00:00:00", "2025-02-01 00:00:00");
+    }
+
+    @Benchmark
+    public List<StatsDto> getStats() {
+        return statService.getStats("2025-01-01 00:00:00", "2025-02-01 00:00:00", uris, false, 10, "exact");
+    }
+
+    @Benchmark
+    public List<int[]> queryStats() {
+        return statService.queryStats(query);
+    }
+
+    /**
+     * Хранилище, возвращающее заранее подготовленную статистику
+     */
+    private static class FixedStatStorage implements StatStorage {
+        private final List<ViewStats> viewStats;
+
+        FixedStatStorage(List<ViewStats> viewStats) {
+            this.viewStats = viewStats;
+        }
+
+        @Override
+        public void addHit(EndpointHit hit) {
+        }
+
+        @Override
+        public void addHits(List<EndpointHit> hits) {
+        }
+
+        @Override
+        public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                            Boolean unique, Integer size) {
+            return viewStats;
+        }
+
+        @Override
+        public List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end,
+                                                             List<String> uris, Integer size) {
+            return viewStats;
+        }
+    }
+}
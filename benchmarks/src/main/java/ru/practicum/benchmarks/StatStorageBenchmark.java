@@ -0,0 +1,162 @@
+package ru.practicum.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.ViewStats;
+import ru.practicum.statsvc.repository.HitPartitionManager;
+import ru.practicum.statsvc.repository.HitRollupDbStorage;
+import ru.practicum.statsvc.repository.MappedStatStorage;
+import ru.practicum.statsvc.repository.StatDbStorage;
+import ru.practicum.statsvc.repository.StatStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение хранилищ статистики: база данных (stats.storage=db)
+ * и файлы, отображенные в память (stats.storage=mmap).
+ * Хранилище в базе данных подключается к PostgreSQL по свойствам
+ * bench.db.url, bench.db.username и bench.db.password, в базе создаются
+ * таблицы сервиса статистики, поэтому для запуска нужна отдельная база.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatStorageBenchmark {
+    private static final int URI_COUNT = 1000;
+    private static final int IP_COUNT = 10000;
+    private static final int QUERY_URIS = 10;
+
+    @Param({"mmap", "db"})
+    private String backend;
+
+    @Param({"100"})
+    private int batchSize;
+
+    @Param({"100000"})
+    private int preloaded;
+
+    private StatStorage storage;
+    private HikariDataSource dataSource;
+    private MappedStatStorage mappedStorage;
+    private Path dir;
+    private String prefix;
+    private List<String> queryUris;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (backend.equals("mmap")) {
+            dir = Files.createTempDirectory("stat-storage-bench");
+            mappedStorage = new MappedStatStorage(dir.toString(), 1 << 20);
+            mappedStorage.init();
+            storage = mappedStorage;
+        } else {
+            dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(System.getProperty("bench.db.url",
+                    "jdbc:postgresql://localhost:5432/statdb?reWriteBatchedInserts=true"));
+            dataSource.setUsername(System.getProperty("bench.db.username", "statdb"));
+            dataSource.setPassword(System.getProperty("bench.db.password", "statdb"));
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+            new HitPartitionManager(jdbc, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                    2, 0).init();
+            storage = new StatDbStorage(jdbc, new HitRollupDbStorage(jdbc));
+        }
+
+        // эндпоинты запуска не пересекаются с данными предыдущих запусков
+        prefix = "/bench-" + System.nanoTime() + "/events/";
+        end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        start = end.minusDays(30);
+        List<EndpointHit> batch = new ArrayList<>();
+        for (int i = 0; i < preloaded; i++) {
+            batch.add(new EndpointHit(null, "ewm-main-service", prefix + (i % URI_COUNT),
+                    "10.0." + (i % IP_COUNT) / 256 + "." + (i % IP_COUNT) % 256,
+                    start.plusSeconds(i * 30L * 24 * 3600 / preloaded)));
+            if (batch.size() == 1000) {
+                storage.addHits(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            storage.addHits(batch);
+        }
+        queryUris = new ArrayList<>();
+        for (int i = 0; i < QUERY_URIS; i++) {
+            queryUris.add(prefix + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (mappedStorage != null) {
+            mappedStorage.close();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    public void addHits() {
+        List<EndpointHit> hits = new ArrayList<>(batchSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batchSize; i++) {
+            int n = sequence++;
+            hits.add(new EndpointHit(null, "ewm-main-service", prefix + (n % URI_COUNT),
+                    "10.1." + (n % IP_COUNT) / 256 + "." + (n % IP_COUNT) % 256, now));
+        }
+        storage.addHits(hits);
+    }
+
+    @Benchmark
+    public List<ViewStats> getStats() {
+        return storage.getViewStats(start, end, queryUris, false, 10);
+    }
+
+    @Benchmark
+    public List<ViewStats> getUniqueStats() {
+        return storage.getViewStats(start, end, queryUris, true, 10);
+    }
+
+    @Benchmark
+    public List<ViewStats> getStatsUnaligned() {
+        return storage.getViewStats(start.plusMinutes(17), end.minusMinutes(17), queryUris, false, 10);
+    }
+}
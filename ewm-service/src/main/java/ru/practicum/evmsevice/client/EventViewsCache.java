@@ -0,0 +1,264 @@
+package ru.practicum.evmsevice.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.evmsevice.exception.StatsUnavailableException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный кэш количества просмотров событий.
+ * Отсутствующие и устаревшие значения для группы событий
+ * загружаются с сервера статистики одним запросом.
+ * Запрос выполняется в виртуальном потоке и ожидается не дольше
+ * ewm.views-cache.timeout-ms: если сервер статистики не ответил вовремя
+ * или вернул ошибку, а также при разомкнутом выключателе вызовов
+ * используются последние известные значения (или 0),
+ * а загрузка продолжается в фоне и обновляет кэш для следующих запросов.
+ * Запросы той же группы событий, поступившие до окончания загрузки, ожидают
+ * ее результата и не запускают повторных запросов к серверу статистики.
+ * Просмотр события с нового для этого экземпляра сервиса адреса увеличивает значение
+ * в кэше сразу, не дожидаясь сервера статистики. Срок хранения значения при этом
+ * не продлевается: не позже чем через ewm.views-cache.ttl-seconds значение
+ * перечитывается с сервера статистики, до этого оно может отличаться на просмотры
+ * с других экземпляров сервиса и с адресов, учтенных сервером ранее.
+ */
+@Slf4j
+@Component
+public class EventViewsCache implements MeterBinder {
+    private final StatsClient statsClient;
+    private final LoadingCache<Integer, Integer> cache;
+    // последние полученные значения, не устаревают и используются при недоступности сервера статистики
+    private final Cache<Integer, Integer> lastKnown;
+    // адреса, просмотры с которых уже добавлены к значениям кэша
+    private final Cache<Integer, Set<String>> viewedFrom;
+    // выполняющиеся загрузки по группам событий
+    private final Map<Set<Integer>, CompletableFuture<Map<Integer, Integer>>> loadings = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long timeoutMs;
+
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public EventViewsCache(StatsClient statsClient,
+                           @Value("${ewm.views-cache.ttl-seconds:30}") long ttlSeconds,
+                           @Value("${ewm.views-cache.maximum-size:100000}") long maximumSize,
+                           @Value("${ewm.views-cache.timeout-ms:500}") long timeoutMs) {
+        this.statsClient = statsClient;
+        this.timeoutMs = timeoutMs;
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Integer, Integer>() {
+                    @Override
+                    public long expireAfterCreate(Integer eventId, Integer views, long currentTime) {
+                        return ttlNanos;
+                    }
+
+                    // увеличение просмотров после посещения не продлевает срок хранения
+                    @Override
+                    public long expireAfterUpdate(Integer eventId, Integer views,
+                                                  long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer eventId, Integer views,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(new ViewsLoader());
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        this.viewedFrom = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Количество уникальных просмотров события
+     *
+     * @param eventId - идентификатор события
+     * @return - количество просмотров
+     */
+    public Integer getViews(Integer eventId) {
+        return getViews(List.of(eventId)).get(eventId);
+    }
+
+    /**
+     * Количество уникальных просмотров группы событий
+     *
+     * @param eventIds - идентификаторы событий
+     * @return - карта идентификатор события - количество просмотров
+     */
+    public Map<Integer, Integer> getViews(Collection<Integer> eventIds) {
+        if (eventIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, Integer> views = new HashMap<>(cache.getAllPresent(eventIds));
+        if (views.size() == eventIds.size()) {
+            return views;
+        }
+        List<Integer> missing = eventIds.stream()
+                .filter(eventId -> !views.containsKey(eventId))
+                .toList();
+        CompletableFuture<Map<Integer, Integer>> loading = load(Set.copyOf(missing));
+        try {
+            views.putAll(loading.get(timeoutMs, TimeUnit.MILLISECONDS));
+            return views;
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            log.warn("Сервер статистики не ответил за {} мс, используются последние известные просмотры.",
+                    timeoutMs);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StatsUnavailableException) {
+                // выключатель разомкнут, сервис работает в режиме DEGRADED
+                rejected.incrementAndGet();
+                return fillFromLastKnown(views, missing);
+            }
+            failures.incrementAndGet();
+            log.warn("Не удалось получить просмотры событий, используются последние известные значения. {}",
+                    e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+        }
+        return fillFromLastKnown(views, missing);
+    }
+
+    /**
+     * Учет посещения события в кэше: просмотр с адреса, которого еще не было среди
+     * просмотров события, увеличивает количество уникальных просмотров на 1
+     *
+     * @param eventId - идентификатор события
+     * @param ip      - адрес пользователя
+     */
+    public void recordView(Integer eventId, String ip) {
+        Set<String> addresses = viewedFrom.get(eventId, id -> ConcurrentHashMap.newKeySet());
+        if (addresses.add(ip == null ? "" : ip)) {
+            cache.asMap().computeIfPresent(eventId, (id, views) -> views + 1);
+        }
+    }
+
+    /**
+     * Загрузка просмотров группы событий в виртуальном потоке.
+     * Если загрузка той же группы уже выполняется, возвращается ее результат
+     *
+     * @param eventIds - идентификаторы событий
+     * @return - результат загрузки
+     */
+    private CompletableFuture<Map<Integer, Integer>> load(Set<Integer> eventIds) {
+        CompletableFuture<Map<Integer, Integer>> loading = new CompletableFuture<>();
+        CompletableFuture<Map<Integer, Integer>> running = loadings.putIfAbsent(eventIds, loading);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loading.complete(cache.getAll(eventIds));
+                } catch (Throwable e) {
+                    loading.completeExceptionally(e);
+                } finally {
+                    loadings.remove(eventIds, loading);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loadings.remove(eventIds, loading);
+            loading.completeExceptionally(e);
+        }
+        return loading;
+    }
+
+    private Map<Integer, Integer> fillFromLastKnown(Map<Integer, Integer> views, List<Integer> eventIds) {
+        for (Integer eventId : eventIds) {
+            Integer known = lastKnown.getIfPresent(eventId);
+            views.put(eventId, known == null ? 0 : known);
+        }
+        return views;
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "eventViews");
+        FunctionCounter.builder("stats.views.fallback", this, EventViewsCache::getTimeoutCount)
+                .description("Запросы просмотров, выполненные по последним известным значениям")
+                .tag("reason", "timeout")
+                .register(registry);
+        FunctionCounter.builder("stats.views.fallback", this, EventViewsCache::getFailureCount)
+                .description("Запросы просмотров, выполненные по последним известным значениям")
+                .tag("reason", "error")
+                .register(registry);
+        FunctionCounter.builder("stats.views.fallback", this, EventViewsCache::getRejectedCount)
+                .description("Запросы просмотров, выполненные по последним известным значениям")
+                .tag("reason", "circuit-open")
+                .register(registry);
+    }
+
+    private class ViewsLoader implements CacheLoader<Integer, Integer> {
+        @Override
+        public Integer load(Integer eventId) {
+            Integer views = statsClient.getEventViews(eventId, true);
+            lastKnown.put(eventId, views);
+            return views;
+        }
+
+        @Override
+        public Map<Integer, Integer> loadAll(Set<? extends Integer> eventIds) {
+            Map<Integer, Integer> views = new HashMap<>();
+            for (Integer eventId : eventIds) {
+                views.put(eventId, 0);
+            }
+            views.putAll(statsClient.getEventViewsByIds(List.copyOf(eventIds), true));
+            lastKnown.putAll(views);
+            return views;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ru.practicum.evmsevice.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.evmsevice.enums.HitOverflowPolicy;
+import ru.practicum.statdto.HitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронная отправка сведений о посещениях на сервер статистики.
+ * Посещения складываются в ограниченную очередь, фоновый поток
+ * выбирает их пакетами и передает на отправку.
+ * Пакет, который не удалось отправить (ошибка или разомкнутый выключатель),
+ * отправляется повторно с увеличивающейся паузой от retryInitialMs до retryMaxMs,
+ * пока сервер статистики не примет его. Новые посещения в это время копятся в очереди,
+ * при ее переполнении действует overflowPolicy. Потерянными (stats.hits.failed)
+ * считаются только посещения, не отправленные при остановке сервиса и при SPILL.
+ */
+@Slf4j
+public class HitSender implements MeterBinder {
+    private final BlockingQueue<HitDto> queue;
+    private final Consumer<List<HitDto>> batchConsumer;
+    private final int batchSize;
+    private final long lingerMs;
+    private final HitOverflowPolicy overflowPolicy;
+    private final long blockTimeoutMs;
+    private final long retryInitialMs;
+    private final long retryMaxMs;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public HitSender(Consumer<List<HitDto>> batchConsumer,
+                     int queueCapacity,
+                     int batchSize,
+                     long lingerMs,
+                     HitOverflowPolicy overflowPolicy,
+                     long blockTimeoutMs,
+                     long retryInitialMs,
+                     long retryMaxMs) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchConsumer = batchConsumer;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.retryInitialMs = retryInitialMs;
+        this.retryMaxMs = retryMaxMs;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "stats-hit-sender");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Остановка фонового потока с отправкой оставшихся в очереди посещений.
+     * Оставшиеся посещения отправляются по одному разу, неотправленные учитываются в stats.hits.failed.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<HitDto> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            sendOnce(rest.subList(i, Math.min(rest.size(), i + batchSize)));
+        }
+    }
+
+    /**
+     * Постановка посещения в очередь на отправку
+     *
+     * @param hitDto - сведения о посещении
+     */
+    public void submit(HitDto hitDto) {
+        if (queue.offer(hitDto)) {
+            queued.incrementAndGet();
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (queue.offer(hitDto, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        queued.incrementAndGet();
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.incrementAndGet();
+            }
+            case SPILL -> sendOnce(List.of(hitDto));
+            default -> dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        long backoffMs = 0;
+        while (running) {
+            try {
+                if (backoffMs > 0) {
+                    Thread.sleep(backoffMs);
+                }
+                if (batch.isEmpty()) {
+                    fill(batch);
+                }
+            } catch (InterruptedException e) {
+                // остановка потока, накопленный пакет отправляем ниже
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            if (trySend(batch)) {
+                batch = new ArrayList<>(batchSize);
+                backoffMs = 0;
+            } else if (running) {
+                retried.addAndGet(batch.size());
+                if (backoffMs == 0) {
+                    log.warn("Не удалось отправить {} посещений на сервер статистики, пакет будет отправлен повторно.",
+                            batch.size());
+                }
+                backoffMs = backoffMs == 0 ? retryInitialMs : Math.min(retryMaxMs, backoffMs * 2);
+            } else {
+                failed.addAndGet(batch.size());
+                log.warn("{} посещений не отправлены на сервер статистики при остановке.", batch.size());
+            }
+        }
+    }
+
+    /**
+     * Выборка пакета из очереди: ожидание первого посещения не дольше lingerMs,
+     * затем накопление пакета не дольше lingerMs
+     */
+    private void fill(List<HitDto> batch) throws InterruptedException {
+        HitDto first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            HitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private boolean trySend(List<HitDto> batch) {
+        try {
+            batchConsumer.accept(batch);
+            sent.addAndGet(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.debug("Ошибка отправки посещений на сервер статистики. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void sendOnce(List<HitDto> batch) {
+        if (!trySend(batch)) {
+            failed.addAndGet(batch.size());
+            log.warn("Не удалось отправить {} посещений на сервер статистики, посещения потеряны.", batch.size());
+        }
+    }
+
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stats.hits.queued", this, HitSender::getQueuedCount)
+                .description("Посещения, принятые в очередь отправки")
+                .register(registry);
+        FunctionCounter.builder("stats.hits.sent", this, HitSender::getSentCount)
+                .description("Посещения, отправленные на сервер статистики")
+                .register(registry);
+        FunctionCounter.builder("stats.hits.dropped", this, HitSender::getDroppedCount)
+                .description("Посещения, отброшенные при переполнении очереди")
+                .register(registry);
+        FunctionCounter.builder("stats.hits.failed", this, HitSender::getFailedCount)
+                .description("Посещения, которые не удалось отправить")
+                .register(registry);
+        FunctionCounter.builder("stats.hits.retried", this, HitSender::getRetriedCount)
+                .description("Посещения в пакетах, отправленных повторно после ошибки")
+                .register(registry);
+        Gauge.builder("stats.hits.queue.size", this, HitSender::getQueueSize)
+                .description("Текущий размер очереди отправки")
+                .register(registry);
+    }
+}
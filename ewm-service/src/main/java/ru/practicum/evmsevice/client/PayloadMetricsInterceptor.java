@@ -0,0 +1,108 @@
+package ru.practicum.evmsevice.client;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Размер тел запросов к серверу статистики и его ответов.
+ * Ответы передаются частями без заголовка Content-Length,
+ * поэтому размер ответа считается по прочитанным байтам.
+ */
+public class PayloadMetricsInterceptor implements ClientHttpRequestInterceptor {
+    private final DistributionSummary requestSize;
+    private final DistributionSummary responseSize;
+
+    public PayloadMetricsInterceptor(MeterRegistry registry) {
+        this.requestSize = summary(registry, "request");
+        this.responseSize = summary(registry, "response");
+    }
+
+    private static DistributionSummary summary(MeterRegistry registry, String direction) {
+        return DistributionSummary.builder("stats.client.payload")
+                .description("Размер тела запроса или ответа сервера статистики")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpResponse intercept(@NonNull HttpRequest request,
+                                        @NonNull byte[] body,
+                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+        requestSize.record(body.length);
+        return new CountingResponse(execution.execute(request, body));
+    }
+
+    private class CountingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private long bytes;
+        private InputStream body;
+
+        CountingResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int value = super.read();
+                        if (value >= 0) {
+                            bytes++;
+                        }
+                        return value;
+                    }
+
+                    @Override
+                    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                        int count = super.read(buffer, offset, length);
+                        if (count > 0) {
+                            bytes += count;
+                        }
+                        return count;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            responseSize.record(bytes);
+            delegate.close();
+        }
+    }
+}
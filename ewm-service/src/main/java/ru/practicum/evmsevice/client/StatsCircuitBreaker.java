@@ -0,0 +1,131 @@
+package ru.practicum.evmsevice.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.practicum.evmsevice.enums.CircuitState;
+import ru.practicum.evmsevice.exception.StatsUnavailableException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Автоматический выключатель вызовов сервера статистики.
+ * После failureThreshold ошибок подряд вызовы отклоняются в течение openMs,
+ * затем пропускается один пробный вызов: при успехе выключатель замыкается,
+ * при ошибке снова размыкается. Ошибки клиента (4xx) сбоем сервера не считаются.
+ */
+@Slf4j
+public class StatsCircuitBreaker implements MeterBinder {
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public StatsCircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    /**
+     * Выполнение вызова сервера статистики
+     *
+     * @param call - вызов
+     * @param <T>  - тип результата
+     * @return - результат вызова
+     * @throws StatsUnavailableException - если выключатель разомкнут
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new StatsUnavailableException("Сервер статистики временно недоступен.");
+        }
+        try {
+            T result = call.get();
+            onSuccess();
+            return result;
+        } catch (HttpClientErrorException e) {
+            onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                log.info("Пробный вызов сервера статистики.");
+                return true;
+            }
+            default -> {
+                // пробный вызов уже выполняется
+                return false;
+            }
+        }
+    }
+
+    private synchronized void onSuccess() {
+        if (state != CircuitState.CLOSED) {
+            log.info("Сервер статистики снова доступен.");
+        }
+        state = CircuitState.CLOSED;
+        failures = 0;
+    }
+
+    private synchronized void onFailure() {
+        failures++;
+        if (state == CircuitState.HALF_OPEN || (state == CircuitState.CLOSED && failures >= failureThreshold)) {
+            state = CircuitState.OPEN;
+            openedAt = System.nanoTime();
+            opened.incrementAndGet();
+            log.warn("Вызовы сервера статистики приостановлены после {} ошибок подряд.", failures);
+        }
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stats.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("Состояние выключателя: 0 - замкнут, 1 - разомкнут, 2 - пробный вызов")
+                .register(registry);
+        FunctionCounter.builder("stats.circuit.opened", this, StatsCircuitBreaker::getOpenedCount)
+                .description("Количество размыканий выключателя")
+                .register(registry);
+        FunctionCounter.builder("stats.circuit.rejected", this, StatsCircuitBreaker::getRejectedCount)
+                .description("Вызовы, отклоненные разомкнутым выключателем")
+                .register(registry);
+    }
+}
@@ -1,5 +1,16 @@
 package ru.practicum.evmsevice.client;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
@@ -8,64 +19,225 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.evmsevice.enums.HitOverflowPolicy;
+import ru.practicum.evmsevice.exception.StatsUnavailableException;
 import ru.practicum.statclient.BaseClient;
 import ru.practicum.statdto.HitDto;
 import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
+@Slf4j
 @Component
-public class StatsClient extends BaseClient {
+public class StatsClient extends BaseClient implements MeterBinder {
     private static final String PREFIX_HIT = "/hit";
+    private static final String PREFIX_HIT_BATCH = "/hit/batch";
     private static final String PREFIX_STATS = "/stats";
+    private static final String PREFIX_STATS_QUERY = "/stats/query";
     private static final String PREFIX_EVENTS = "/events/";
 
+    private final HitSender hitSender;
+    private final boolean asyncHits;
+    private final StatsCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
     @Autowired
-    public StatsClient(@Value("${statserver.url}") String serverUrl, RestTemplateBuilder builder) {
+    public StatsClient(@Value("${statserver.url}") String serverUrl,
+                       @Value("${statserver.hit.queue-capacity:10000}") int queueCapacity,
+                       @Value("${statserver.hit.batch-size:100}") int batchSize,
+                       @Value("${statserver.hit.linger-ms:200}") long lingerMs,
+                       @Value("${statserver.hit.overflow-policy:DROP}") HitOverflowPolicy overflowPolicy,
+                       @Value("${statserver.hit.block-timeout-ms:50}") long blockTimeoutMs,
+                       @Value("${statserver.hit.retry-initial-ms:100}") long retryInitialMs,
+                       @Value("${statserver.hit.retry-max-ms:5000}") long retryMaxMs,
+                       @Value("${statserver.hit.async:false}") boolean asyncHits,
+                       @Value("${statserver.connect-timeout-ms:500}") long connectTimeoutMs,
+                       @Value("${statserver.read-timeout-ms:2000}") long readTimeoutMs,
+                       @Value("${statserver.pool.max-connections:50}") int maxConnections,
+                       @Value("${statserver.circuit.failure-threshold:5}") int failureThreshold,
+                       @Value("${statserver.circuit.open-ms:10000}") long openMs,
+                       RestTemplateBuilder builder,
+                       MeterRegistry meterRegistry) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
-                        .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
+                        .requestFactory(() -> createRequestFactory(connectTimeoutMs, readTimeoutMs, maxConnections))
+                        .additionalInterceptors(new PayloadMetricsInterceptor(meterRegistry))
                         .build()
         );
+        this.hitSender = new HitSender(this::postBatch, queueCapacity, batchSize, lingerMs,
+                overflowPolicy, blockTimeoutMs, retryInitialMs, retryMaxMs);
+        this.asyncHits = asyncHits;
+        this.circuitBreaker = new StatsCircuitBreaker(failureThreshold, openMs);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Фабрика http запросов с пулом соединений и ограничением времени ожидания.
+     * Сервер статистики один, поэтому все соединения пула доступны одному маршруту.
+     */
+    private static HttpComponentsClientHttpRequestFactory createRequestFactory(long connectTimeoutMs,
+                                                                               long readTimeoutMs,
+                                                                               int maxConnections) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                // ожидание свободного соединения в пуле
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .build())
+                .setDefaultRequestConfig(requestConfig)
+                .build());
+    }
+
+    @PostConstruct
+    public void startHitSender() {
+        hitSender.start();
+    }
+
+    @PreDestroy
+    public void stopHitSender() {
+        hitSender.stop();
     }
 
     public void post(HitDto dto) {
         makeAndSendRequest(HttpMethod.POST, PREFIX_HIT, null, dto);
     }
 
+    /**
+     * Отправка пакета посещений, накопленного в очереди
+     *
+     * @param dtos - список посещений
+     */
+    private void postBatch(List<HitDto> dtos) {
+        call("hits", () -> {
+            ResponseEntity<Object> response = makeAndSendRequest(HttpMethod.POST, PREFIX_HIT_BATCH, null, dtos);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new IllegalStateException("Сервер статистики вернул код " + response.getStatusCode());
+            }
+            return response;
+        });
+    }
+
     public ResponseEntity<Object> get(Map<String, Object> parameters) {
         return makeAndSendRequest(HttpMethod.GET, PREFIX_STATS, parameters, null);
     }
 
-    public void hitInfo(String appName, String uri, String ip) {
+    /**
+     * Сохранение посещений на сервере статистики.
+     * При statserver.hit.async=true посещения только ставятся в очередь отправки
+     * и учитываются сервером статистики через statserver.hit.linger-ms.
+     * По умолчанию посещения отправляются одним запросом до возврата из метода, чтобы статистика,
+     * запрошенная сразу после посещения, уже учитывала его. Если отправить не удалось
+     * (в том числе при разомкнутом выключателе), посещения ставятся в очередь
+     * и отправляются повторно, пока сервер статистики их не примет.
+     *
+     * @param appName - имя приложения
+     * @param uris    - эндпоинты посещений
+     * @param ip      - адрес пользователя
+     */
+    public void hitInfo(String appName, List<String> uris, String ip) {
+        if (uris.isEmpty()) {
+            return;
+        }
+        List<HitDto> dtos = uris.stream()
+                .map(uri -> createHit(appName, uri, ip))
+                .toList();
+        if (!asyncHits) {
+            try {
+                postBatch(dtos);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Посещения не сохранены синхронно, {} посещений поставлено в очередь отправки. {}",
+                        dtos.size(), e.getMessage());
+            }
+        }
+        dtos.forEach(hitSender::submit);
+    }
+
+    private static HitDto createHit(String appName, String uri, String ip) {
         HitDto hitDto = new HitDto();
         hitDto.setApp(appName);
         hitDto.setUri(uri);
         hitDto.setIp(ip);
         hitDto.setTimestamp(LocalDateTime.now());
-        post(hitDto);
+        return hitDto;
     }
 
     public Integer getEventViews(Integer eventId, Boolean unique) {
         Map<String, Object> parameters = Map.of("uris", PREFIX_EVENTS + eventId,
                 "unique", unique);
-        List<StatsDto> dtos = getStatsList(PREFIX_STATS, parameters);
+        List<StatsDto> dtos = call("views", () -> getStatsList(PREFIX_STATS, parameters));
         if (dtos.isEmpty()) {
             return 0;
         }
         return dtos.getFirst().getHits();
     }
 
-    public List<StatsDto> getEventViewsByUris(List<String> eventUris, Boolean unique) {
-        StringBuilder urisBuilder = new StringBuilder(eventUris.getFirst());
-        for (int i = 1; i < eventUris.size(); i++) {
-            urisBuilder.append(",").append(eventUris.get(i));
+    /**
+     * Количество просмотров группы событий одним запросом к серверу статистики
+     *
+     * @param eventIds - идентификаторы событий
+     * @param unique   - признак подсчета уникальных просмотров
+     * @return - карта идентификатор события - количество просмотров, события без просмотров отсутствуют
+     */
+    public Map<Integer, Integer> getEventViewsByIds(Collection<Integer> eventIds, Boolean unique) {
+        StatsQueryDto query = new StatsQueryDto(PREFIX_EVENTS, List.copyOf(eventIds), unique, null, null);
+        int[][] pairs = call("views-by-ids", () -> rest.postForObject(PREFIX_STATS_QUERY, query, int[][].class));
+        Map<Integer, Integer> views = new HashMap<>();
+        if (pairs != null) {
+            for (int[] pair : pairs) {
+                views.put(pair[0], pair[1]);
+            }
         }
-        Map<String, Object> parameters = Map.of("uris", urisBuilder.toString(),
-                "unique", unique);
-        return getStatsList(PREFIX_STATS, parameters);
+        return views;
+    }
+
+    /**
+     * Вызов сервера статистики через выключатель с учетом времени выполнения
+     * в метрике stats.client.calls по операциям и результатам
+     */
+    private <T> T call(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return circuitBreaker.call(call);
+        } catch (StatsUnavailableException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("stats.client.calls")
+                    .description("Вызовы сервера статистики")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    public StatsCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        hitSender.bindTo(registry);
+        circuitBreaker.bindTo(registry);
     }
 }
@@ -0,0 +1,32 @@
+package ru.practicum.evmsevice.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+import ru.practicum.evmsevice.enums.CircuitState;
+
+/**
+ * Состояние связи с сервером статистики.
+ * При разомкнутом выключателе сервис продолжает работу в режиме DEGRADED:
+ * просмотры событий берутся из последних полученных значений.
+ */
+@Component("statsServer")
+@RequiredArgsConstructor
+public class StatsServerHealthIndicator implements HealthIndicator {
+    public static final Status DEGRADED = new Status("DEGRADED");
+
+    private final StatsClient statsClient;
+
+    @Override
+    public Health health() {
+        StatsCircuitBreaker breaker = statsClient.getCircuitBreaker();
+        CircuitState state = breaker.getState();
+        return Health.status(state == CircuitState.CLOSED ? Status.UP : DEGRADED)
+                .withDetail("circuit", state)
+                .withDetail("failures", breaker.getFailures())
+                .withDetail("rejected", breaker.getRejectedCount())
+                .build();
+    }
+}
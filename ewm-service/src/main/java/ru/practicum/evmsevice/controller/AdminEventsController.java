@@ -1,14 +1,22 @@
 package ru.practicum.evmsevice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.evmsevice.dto.EventFullDto;
 import ru.practicum.evmsevice.dto.UpdateEventAdminRequest;
 import ru.practicum.evmsevice.service.EventService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -20,6 +28,7 @@ import java.util.List;
 @RequestMapping("/admin/events")
 public class AdminEventsController {
     private final EventService eventService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping()
     @ResponseStatus(HttpStatus.OK)
@@ -36,6 +45,42 @@ public class AdminEventsController {
         return eventService.findEventsByAdmin(states, users, categories, rangeStart, rangeEnd, from, size);
     }
 
+    /**
+     * Выгрузка всех найденных событий в формате NDJSON: по одному событию в строке.
+     * События передаются клиенту по мере чтения из базы данных
+     * без накопления всего результата в памяти.
+     * Условия проверяются до формирования ответа: после начала передачи
+     * статус 200 уже отправлен и вернуть ошибку невозможно.
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEvents(
+            @RequestParam(name = "users", required = false) List<Integer> users,
+            @RequestParam(name = "states", required = false) List<String> states,
+            @RequestParam(name = "categories", required = false) List<Integer> categories,
+            @RequestParam(name = "rangeStart", required = false) String rangeStart,
+            @RequestParam(name = "rangeEnd", required = false) String rangeEnd) {
+        log.info("Администратор выгружает события. users:{}, states:{}, categories:{} rangeStart:{},  rangeEnd:{}.",
+                users, states, categories, rangeStart, rangeEnd);
+        eventService.checkAdminFilters(states, rangeStart, rangeEnd);
+        ObjectWriter writer = objectMapper.writerFor(EventFullDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream ->
+                eventService.exportEventsByAdmin(states, users, categories, rangeStart, rangeEnd, events -> {
+                    try {
+                        for (EventFullDto event : events) {
+                            writer.writeValue(outputStream, event);
+                            outputStream.write('\n');
+                        }
+                        outputStream.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PatchMapping("/{eventId}")
     @ResponseStatus(HttpStatus.OK)
     public EventFullDto updateEvent(@PathVariable Integer eventId,
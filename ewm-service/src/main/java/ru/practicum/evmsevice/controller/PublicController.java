@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.evmsevice.client.EventViewsCache;
 import ru.practicum.evmsevice.client.StatsClient;
 import ru.practicum.evmsevice.dto.*;
 import ru.practicum.evmsevice.enums.CommentState;
@@ -27,6 +28,7 @@ import java.util.List;
 @RequestMapping()
 public class PublicController {
     private final StatsClient statsClient;
+    private final EventViewsCache eventViewsCache;
     private final EventService eventService;
     private final CompilationService compilationService;
     private final CategoryService categoryService;
@@ -44,8 +46,8 @@ public class PublicController {
         if (!event.getState().equals(EventState.PUBLISHED)) {
             throw new NotFoundException("Среди опубликованных не найдено событие id=" + id);
         }
-        // сохраняем запрос в сервере статистики
-        statsClient.hitInfo(appName, request.getRequestURI(), request.getRemoteAddr());
+        statsClient.hitInfo(appName, List.of(request.getRequestURI()), request.getRemoteAddr());
+        eventViewsCache.recordView(id, request.getRemoteAddr());
         return EventMapper.toFullDto(event);
     }
 
@@ -61,16 +63,19 @@ public class PublicController {
             String rangeEnd,
             @RequestParam(name = "onlyAvailable", defaultValue = "false") Boolean onlyAvailable,
             @RequestParam(name = "sort", defaultValue = "EVENT_DATE") String sort,
+            @RequestParam(name = "after", required = false) String after,
             @RequestParam(name = "from", defaultValue = "0") Integer from,
             @RequestParam(name = "size", defaultValue = "10") Integer size,
             HttpServletRequest request) {
         log.info("Пользователь запрашивает поиск событий: содержащих текст:{}, categories:{}, rangeStart:{}, rangeEnd:{}.",
                 text, categories, rangeStart, rangeEnd);
         List<EventShortDto> eventDtos = eventService.findEventsByParametrs(text, categories,
-                paid, rangeStart, rangeEnd, onlyAvailable, sort, from, size);
-        for (EventShortDto eventDto : eventDtos) {
-            statsClient.hitInfo(appName, String.format("/events/%d", eventDto.getId()), request.getRemoteAddr());
-        }
+                paid, rangeStart, rangeEnd, onlyAvailable, sort, after, from, size);
+        // посещения событий сохраняем одним запросом
+        statsClient.hitInfo(appName, eventDtos.stream()
+                .map(eventDto -> String.format("/events/%d", eventDto.getId()))
+                .toList(), request.getRemoteAddr());
+        eventDtos.forEach(eventDto -> eventViewsCache.recordView(eventDto.getId(), request.getRemoteAddr()));
         return eventDtos;
     }
 
@@ -0,0 +1,127 @@
+package ru.practicum.evmsevice.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.evmsevice.repository.StatementCounter;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Количество SQL запросов Hibernate на один http запрос.
+ * Метрика ewm.hibernate.statements с тегами метода и шаблона uri эндпоинта.
+ * Запросы, превысившие бюджет ewm.sql.statement-budget, учитываются
+ * в метрике ewm.hibernate.statements.over-budget и записываются в журнал
+ * вместе с чаще всего повторявшимся SQL запросом.
+ * Подсчет хранится в атрибуте http запроса: при асинхронной обработке (StreamingResponseBody)
+ * он продолжается в потоке, выполняющем тело ответа, и в повторной диспетчеризации
+ * запроса, а метрика записывается один раз после ее завершения.
+ */
+@Slf4j
+@Component
+public class StatementMetricsInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor,
+        WebMvcConfigurer {
+    private static final String STATEMENTS_ATTRIBUTE = StatementMetricsInterceptor.class.getName() + ".statements";
+
+    private final MeterRegistry meterRegistry;
+    private final int statementBudget;
+
+    public StatementMetricsInterceptor(MeterRegistry meterRegistry,
+                                       @Value("${ewm.sql.statement-budget:20}") int statementBudget) {
+        this.meterRegistry = meterRegistry;
+        this.statementBudget = statementBudget;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(this);
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        Object statements = request.getAttribute(STATEMENTS_ATTRIBUTE);
+        if (statements instanceof StatementCounter.Statements started) {
+            StatementCounter.resume(started);
+        } else {
+            request.setAttribute(STATEMENTS_ATTRIBUTE, StatementCounter.start());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+                                               @NonNull HttpServletResponse response,
+                                               @NonNull Object handler) {
+        // подсчет продолжится в асинхронном потоке
+        StatementCounter.stop();
+    }
+
+    @Override
+    public <T> void preProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task) {
+        Object statements = request.getAttribute(STATEMENTS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (statements instanceof StatementCounter.Statements started) {
+            StatementCounter.resume(started);
+        }
+    }
+
+    @Override
+    public <T> void postProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task, Object result) {
+        StatementCounter.stop();
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request,
+                                @NonNull HttpServletResponse response,
+                                @NonNull Object handler,
+                                Exception ex) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        StatementCounter.stop();
+        Object attribute = request.getAttribute(STATEMENTS_ATTRIBUTE);
+        request.removeAttribute(STATEMENTS_ATTRIBUTE);
+        if (!(attribute instanceof StatementCounter.Statements statements)) {
+            return;
+        }
+        int count = statements.getCount();
+        Map.Entry<String, Integer> repeated = statements.getMostRepeated();
+        DistributionSummary.builder("ewm.hibernate.statements")
+                .description("SQL запросы Hibernate на один http запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(count);
+        if (statementBudget > 0 && count > statementBudget) {
+            Counter.builder("ewm.hibernate.statements.over-budget")
+                    .description("Http запросы, превысившие бюджет SQL запросов")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("{} {} выполнил {} SQL запросов при бюджете {}. Чаще всего ({} раз): {}",
+                    request.getMethod(), request.getRequestURI(), count, statementBudget,
+                    repeated.getValue(), repeated.getKey());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.evmsevice.enums;
+
+/**
+ * Состояние автоматического выключателя вызовов сервера статистики
+ */
+public enum CircuitState {
+    // вызовы выполняются
+    CLOSED,
+    // вызовы отклоняются без обращения к серверу
+    OPEN,
+    // выполняется пробный вызов, остальные отклоняются
+    HALF_OPEN
+}
@@ -0,0 +1,13 @@
+package ru.practicum.evmsevice.enums;
+
+/**
+ * Поведение очереди отправки посещений при её переполнении
+ */
+public enum HitOverflowPolicy {
+    // отбросить посещение
+    DROP,
+    // ожидать освобождения места в очереди ограниченное время
+    BLOCK,
+    // отправить посещение синхронно в потоке запроса
+    SPILL
+}
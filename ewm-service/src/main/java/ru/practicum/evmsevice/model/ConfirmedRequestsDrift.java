@@ -0,0 +1,13 @@
+package ru.practicum.evmsevice.model;
+
+/**
+ * Расхождение счетчика подтвержденных заявок события
+ * с фактическим количеством подтвержденных заявок
+ */
+public interface ConfirmedRequestsDrift {
+    Integer getEventId();
+
+    Integer getStored();
+
+    Long getActual();
+}
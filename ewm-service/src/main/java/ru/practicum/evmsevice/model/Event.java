@@ -48,7 +48,9 @@ public class Event {
     private EventState state;
     @Column(name = "title")
     private String title;
-    @Transient
+    // счетчик подтвержденных заявок изменяется только запросами
+    // EventRepository.addConfirmedRequests и сверкой с таблицей заявок
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
     private Integer confirmedRequests;
     @Transient
     private Integer views;
@@ -0,0 +1,31 @@
+package ru.practicum.evmsevice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Количество просмотров события, периодически загружаемое с сервера статистики.
+ * Используется для сортировки событий по популярности на стороне базы данных.
+ * Строка с нулевым количеством создается вместе с событием.
+ */
+@Entity
+@Setter
+@Getter
+@Table(name = "event_views", schema = "public")
+@NoArgsConstructor
+public class EventViews {
+    @Id
+    @Column(name = "event_id")
+    private Integer eventId;
+    @Column(name = "views", nullable = false)
+    private Long views;
+    @Column(name = "updated_on")
+    private LocalDateTime updatedOn;
+}
@@ -1,10 +1,27 @@
 package ru.practicum.evmsevice.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.evmsevice.model.Compilation;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface CompilationRepository extends JpaRepository<Compilation, Integer> {
-    List<Compilation> findAllByPinnedEquals(boolean pinned);
+    @Query("SELECT c.id FROM Compilation c WHERE :pinned IS NULL OR c.pinned = :pinned "
+            + "ORDER BY c.id LIMIT :limit OFFSET :offset")
+    List<Integer> findPageIds(@Param("pinned") Boolean pinned,
+                              @Param("offset") int offset,
+                              @Param("limit") int limit);
+
+    /**
+     * Загрузка подборок вместе с событиями, их категориями и инициаторами одним запросом
+     */
+    @EntityGraph(attributePaths = {"events", "events.category", "events.initiator"})
+    List<Compilation> findAllWithEventsByIdInOrderById(List<Integer> ids);
+
+    @EntityGraph(attributePaths = {"events", "events.category", "events.initiator"})
+    Optional<Compilation> findWithEventsById(Integer id);
 }
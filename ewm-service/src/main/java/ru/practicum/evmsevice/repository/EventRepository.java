@@ -2,15 +2,50 @@ package ru.practicum.evmsevice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.evmsevice.model.ConfirmedRequestsDrift;
 import ru.practicum.evmsevice.model.Event;
 
 import java.util.List;
 
 public interface EventRepository extends JpaRepository<Event, Integer>,
-        JpaSpecificationExecutor<Event> {
+        JpaSpecificationExecutor<Event>, EventRepositoryCustom {
     List<Event> findEventsByInitiator_Id(int id);
 
     List<Event> findEventsByIdIn(List<Integer> ids);
 
     List<Event> findEventsByCategory_Id(int id);
+
+    @Query("SELECT e.id FROM Event e WHERE e.state = 'PUBLISHED'")
+    List<Integer> findPublishedEventIds();
+
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :delta WHERE e.id = :eventId")
+    int addConfirmedRequests(@Param("eventId") int eventId, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :count "
+            + "WHERE e.id = :eventId "
+            + "AND (e.participantLimit = 0 OR e.confirmedRequests + :count <= e.participantLimit)")
+    int reserveConfirmedRequests(@Param("eventId") int eventId, @Param("count") int count);
+
+    @Query("SELECT e.participantLimit - e.confirmedRequests FROM Event e WHERE e.id = :eventId")
+    Integer getFreeSeats(@Param("eventId") int eventId);
+
+    @Query(value = "SELECT e.id AS eventId, e.confirmed_requests AS stored, COUNT(r.id) AS actual "
+            + "FROM events e LEFT JOIN requests r ON r.event_id = e.id AND r.status = 'CONFIRMED' "
+            + "GROUP BY e.id HAVING e.confirmed_requests <> COUNT(r.id)", nativeQuery = true)
+    List<ConfirmedRequestsDrift> findConfirmedRequestsDrift();
+
+    @Query(value = "SELECT e.id FROM events e WHERE e.id = :eventId FOR UPDATE", nativeQuery = true)
+    Integer lockEvent(@Param("eventId") int eventId);
+
+    @Modifying
+    @Query(value = "WITH actual AS (SELECT COUNT(*) AS confirmed FROM requests r "
+            + "WHERE r.event_id = :eventId AND r.status = 'CONFIRMED') "
+            + "UPDATE events e SET confirmed_requests = actual.confirmed FROM actual "
+            + "WHERE e.id = :eventId AND e.confirmed_requests <> actual.confirmed", nativeQuery = true)
+    int recountConfirmedRequests(@Param("eventId") int eventId);
 }
@@ -0,0 +1,56 @@
+package ru.practicum.evmsevice.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.evmsevice.model.Event;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface EventRepositoryCustom {
+    /**
+     * Выборка страницы событий без дополнительного запроса общего количества
+     *
+     * @param spec   - условия поиска
+     * @param sort   - порядок сортировки
+     * @param offset - количество пропускаемых событий
+     * @param limit  - размер страницы
+     * @return - список событий страницы
+     */
+    List<Event> findPage(Specification<Event> spec, Sort sort, long offset, int limit);
+
+    /**
+     * Выборка страницы событий, упорядоченных по убыванию количества просмотров
+     * из таблицы event_views
+     *
+     * @param spec   - условия поиска
+     * @param offset - количество пропускаемых событий
+     * @param limit  - размер страницы
+     * @return - список событий страницы
+     */
+    List<Event> findPageOrderByViews(Specification<Event> spec, long offset, int limit);
+
+    /**
+     * Выборка страницы событий, упорядоченных по релевантности полнотекстовому запросу
+     *
+     * @param spec   - условия поиска
+     * @param text   - текст запроса
+     * @param offset - количество пропускаемых событий
+     * @param limit  - размер страницы
+     * @return - список событий страницы
+     */
+    List<Event> findPageOrderByRelevance(Specification<Event> spec, String text, long offset, int limit);
+
+    /**
+     * Последовательная обработка всех найденных событий окнами фиксированного размера.
+     * События читаются курсором, после обработки окна контекст персистентности
+     * очищается, поэтому расход памяти не зависит от количества событий.
+     * Должна вызываться в транзакции.
+     *
+     * @param spec       - условия поиска
+     * @param sort       - порядок сортировки
+     * @param windowSize - размер окна и количество строк, читаемых из курсора за раз
+     * @param consumer   - обработчик окна событий
+     */
+    void scroll(Specification<Event> spec, Sort sort, int windowSize, Consumer<List<Event>> consumer);
+}
@@ -0,0 +1,114 @@
+package ru.practicum.evmsevice.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.practicum.evmsevice.model.Event;
+import ru.practicum.evmsevice.model.EventViews;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class EventRepositoryCustomImpl implements EventRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Event> findPage(Specification<Event> spec, Sort sort, long offset, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Event> query = criteriaBuilder.createQuery(Event.class);
+        Root<Event> root = query.from(Event.class);
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Event> findPageOrderByViews(Specification<Event> spec, long offset, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Event> query = criteriaBuilder.createQuery(Event.class);
+        Root<Event> root = query.from(Event.class);
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        // строка event_views есть у каждого события, поэтому внутреннее соединение
+        // позволяет прочитать первые строки по индексу ix_event_views_views без сортировки
+        Root<EventViews> eventViews = query.from(EventViews.class);
+        Predicate joined = criteriaBuilder.equal(eventViews.get("eventId"), root.get("id"));
+        query.where(predicate == null ? joined : criteriaBuilder.and(joined, predicate));
+        query.select(root).orderBy(
+                criteriaBuilder.desc(eventViews.get("views")),
+                criteriaBuilder.asc(eventViews.get("eventId")));
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Event> findPageOrderByRelevance(Specification<Event> spec, String text, long offset, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Event> query = criteriaBuilder.createQuery(Event.class);
+        Root<Event> root = query.from(Event.class);
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        Expression<Double> rank = criteriaBuilder.function(FullTextSearchFunctionContributor.RANK, Double.class,
+                root.get("id"), ((HibernateCriteriaBuilder) criteriaBuilder).value(text));
+        query.select(root).orderBy(criteriaBuilder.desc(rank), criteriaBuilder.asc(root.get("id")));
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void scroll(Specification<Event> spec, Sort sort, int windowSize, Consumer<List<Event>> consumer) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Event> query = criteriaBuilder.createQuery(Event.class);
+        Root<Event> root = query.from(Event.class);
+        // категория и инициатор читаются в той же строке курсора
+        root.fetch("category", JoinType.LEFT);
+        root.fetch("initiator", JoinType.LEFT);
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        try (Stream<Event> events = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, windowSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()) {
+            List<Event> window = new ArrayList<>(windowSize);
+            events.forEach(event -> {
+                window.add(event);
+                if (window.size() == windowSize) {
+                    consumer.accept(window);
+                    window.clear();
+                    entityManager.clear();
+                }
+            });
+            if (!window.isEmpty()) {
+                consumer.accept(window);
+                entityManager.clear();
+            }
+        }
+    }
+}
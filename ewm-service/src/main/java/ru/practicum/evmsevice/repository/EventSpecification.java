@@ -1,5 +1,6 @@
 package ru.practicum.evmsevice.repository;
 
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.data.jpa.domain.Specification;
 import ru.practicum.evmsevice.model.Event;
 
@@ -17,6 +18,15 @@ public class EventSpecification {
                 criteriaBuilder.like(root.get("description"), "%" + text + "%"));
     }
 
+    /**
+     * Полнотекстовый поиск по аннотации и описанию события
+     */
+    public static Specification<Event> textMatches(String text) {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.isTrue(criteriaBuilder.function(FullTextSearchFunctionContributor.MATCH, Boolean.class,
+                        root.get("id"), ((HibernateCriteriaBuilder) criteriaBuilder).value(text))));
+    }
+
     public static Specification<Event> categoryIn(List<Integer> categories) {
         return ((root, query, criteriaBuilder) ->
                 criteriaBuilder.in(root.join("category").get("id")).value(categories));
@@ -46,4 +56,26 @@ public class EventSpecification {
         return ((root, query, criteriaBuilder) ->
                 criteriaBuilder.in(root.get("state")).value(states));
     }
+
+    /**
+     * События, у которых задан лимит участников и он еще не исчерпан
+     */
+    public static Specification<Event> participantLimitNotReached() {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.and(
+                        criteriaBuilder.notEqual(root.get("participantLimit"), 0),
+                        criteriaBuilder.lessThan(root.get("confirmedRequests"), root.get("participantLimit"))));
+    }
+
+    /**
+     * События, следующие за курсором (eventDate, id) в порядке сортировки по дате
+     */
+    public static Specification<Event> afterCursor(LocalDateTime eventDate, Integer id) {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(root.get("eventDate"), eventDate),
+                        criteriaBuilder.and(
+                                criteriaBuilder.equal(root.get("eventDate"), eventDate),
+                                criteriaBuilder.greaterThan(root.get("id"), id))));
+    }
 }
@@ -0,0 +1,8 @@
+package ru.practicum.evmsevice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.evmsevice.model.EventViews;
+
+public interface EventViewsRepository extends JpaRepository<EventViews, Integer>,
+        EventViewsRepositoryCustom {
+}
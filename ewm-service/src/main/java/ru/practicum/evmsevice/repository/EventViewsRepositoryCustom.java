@@ -0,0 +1,21 @@
+package ru.practicum.evmsevice.repository;
+
+import java.util.Map;
+
+public interface EventViewsRepositoryCustom {
+    /**
+     * Пакетное сохранение количества просмотров событий
+     *
+     * @param views - карта идентификатор события - количество просмотров
+     */
+    void upsertViews(Map<Integer, Long> views);
+
+    /**
+     * Строка просмотров нового события с нулевым количеством.
+     * Строка есть у каждого события, поэтому сортировка по популярности
+     * соединяет события с event_views без внешнего соединения.
+     *
+     * @param eventId - идентификатор события
+     */
+    void createViews(Integer eventId);
+}
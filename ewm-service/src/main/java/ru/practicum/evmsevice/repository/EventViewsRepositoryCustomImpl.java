@@ -0,0 +1,40 @@
+package ru.practicum.evmsevice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class EventViewsRepositoryCustomImpl implements EventViewsRepositoryCustom {
+    private static final String UPSERT_VIEWS = "INSERT INTO event_views (event_id, views, updated_on) "
+            + "VALUES (:eventId, :views, :updatedOn) "
+            + "ON CONFLICT (event_id) DO UPDATE SET views = EXCLUDED.views, updated_on = EXCLUDED.updated_on";
+    private static final String INSERT_VIEWS = "INSERT INTO event_views (event_id, views) VALUES (:eventId, 0) "
+            + "ON CONFLICT (event_id) DO NOTHING";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public void upsertViews(Map<Integer, Long> views) {
+        if (views.isEmpty()) {
+            return;
+        }
+        LocalDateTime updatedOn = LocalDateTime.now();
+        SqlParameterSource[] batch = views.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("eventId", entry.getKey())
+                        .addValue("views", entry.getValue())
+                        .addValue("updatedOn", updatedOn))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate(UPSERT_VIEWS, batch);
+    }
+
+    @Override
+    public void createViews(Integer eventId) {
+        jdbc.update(INSERT_VIEWS, new MapSqlParameterSource("eventId", eventId));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.practicum.evmsevice.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.ReturnableType;
+import org.hibernate.query.sqm.function.AbstractSqmSelfRenderingFunctionDescriptor;
+import org.hibernate.query.sqm.produce.function.StandardArgumentsValidators;
+import org.hibernate.query.sqm.produce.function.StandardFunctionArgumentTypeResolvers;
+import org.hibernate.query.sqm.produce.function.StandardFunctionReturnTypeResolvers;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.spi.SqlAppender;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.sql.ast.tree.expression.ColumnReference;
+import org.hibernate.sql.ast.tree.expression.Expression;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.List;
+
+/**
+ * Функции полнотекстового поиска PostgreSQL для запросов по событиям.
+ * Документ события хранится в вычисляемом столбце search_vector
+ * (миграция db/migration/V2__event_counters_and_search.sql), условие fts_match
+ * выполняется по GIN-индексу ix_events_search_vector.
+ * Столбец не отображается в сущность Event, чтобы не читать его вместе с событиями,
+ * поэтому первым аргументом функций передается идентификатор события,
+ * а к столбцу обращаются через псевдоним его таблицы.
+ * Общий план подготовленного запроса не знает избирательности поискового текста
+ * и сканирует события по дате, поэтому соединения с базой открываются
+ * с plan_cache_mode=force_custom_plan (application.properties).
+ */
+public class FullTextSearchFunctionContributor implements FunctionContributor {
+    public static final String MATCH = "fts_match";
+    public static final String RANK = "fts_rank";
+
+    private static final String DOCUMENT = "search_vector";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN);
+        BasicType<Double> doubleType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+        functionContributions.getFunctionRegistry()
+                .register(MATCH, new SearchVectorFunction(MATCH, "(", " @@ ", booleanType));
+        functionContributions.getFunctionRegistry()
+                .register(RANK, new SearchVectorFunction(RANK, "ts_rank(", ", ", doubleType));
+    }
+
+    /**
+     * Функция вида prefix search_vector separator plainto_tsquery('russian', text)),
+     * аргументы - идентификатор события и поисковый текст
+     */
+    private static class SearchVectorFunction extends AbstractSqmSelfRenderingFunctionDescriptor {
+        private final String prefix;
+        private final String separator;
+
+        SearchVectorFunction(String name, String prefix, String separator, BasicType<?> type) {
+            super(name, StandardArgumentsValidators.exactly(2),
+                    StandardFunctionReturnTypeResolvers.invariant(type), StandardFunctionArgumentTypeResolvers.NULL);
+            this.prefix = prefix;
+            this.separator = separator;
+        }
+
+        @Override
+        public void render(SqlAppender sqlAppender, List<? extends SqlAstNode> arguments,
+                           ReturnableType<?> returnType, SqlAstTranslator<?> walker) {
+            ColumnReference eventId = ((Expression) arguments.get(0)).getColumnReference();
+            sqlAppender.append(prefix);
+            if (eventId != null && eventId.getQualifier() != null) {
+                sqlAppender.append(eventId.getQualifier());
+                sqlAppender.append('.');
+            }
+            sqlAppender.append(DOCUMENT);
+            sqlAppender.append(separator);
+            sqlAppender.append("plainto_tsquery('russian', ");
+            arguments.get(1).accept(walker);
+            sqlAppender.append("))");
+        }
+    }
+}
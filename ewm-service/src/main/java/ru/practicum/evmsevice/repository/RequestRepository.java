@@ -1,9 +1,10 @@
 package ru.practicum.evmsevice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.evmsevice.model.EventConfirmedRequestCount;
+import ru.practicum.evmsevice.enums.RequestStatus;
 import ru.practicum.evmsevice.model.Request;
 
 import java.util.List;
@@ -13,11 +14,7 @@ public interface RequestRepository extends JpaRepository<Request, Integer> {
 
     List<Request> findAllByEvent_Id(int eventId);
 
-    @Query("SELECT COUNT(r) FROM Request r WHERE r.event.id = :eventId AND r.status = 'CONFIRMED'")
-    Integer getCountConfirmedRequestsByEventId(@Param("eventId") int eventId);
-
-    @Query("SELECT new ru.practicum.evmsevice.model.EventConfirmedRequestCount(r.event.id, COUNT(r)) " +
-            "FROM Request r WHERE r. event.id IN (:ids) AND r.status = 'CONFIRMED'" +
-            "GROUP BY r.event.id")
-    List<EventConfirmedRequestCount> getCountConfirmedRequests(@Param("ids") List<Integer> ids);
+    @Modifying
+    @Query("UPDATE Request r SET r.status = :status WHERE r.id IN :ids AND r.status = 'PENDING'")
+    int updatePendingStatus(@Param("ids") List<Integer> ids, @Param("status") RequestStatus status);
 }
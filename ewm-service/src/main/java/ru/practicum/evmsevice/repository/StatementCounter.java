@@ -0,0 +1,89 @@
+package ru.practicum.evmsevice.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Подсчет SQL запросов, выполненных Hibernate в текущем потоке.
+ * Подключается свойством spring.jpa.properties.hibernate.session_factory.statement_inspector,
+ * подсчет начинается и заканчивается вместе с обработкой http запроса.
+ * Запросы, выполненные при асинхронной обработке http запроса (выгрузка событий
+ * через StreamingResponseBody), учитываются в подсчете этого http запроса: подсчет
+ * продолжается в асинхронном потоке через resume (StatementMetricsInterceptor).
+ * Вне обработки http запроса (например, в потоках планировщика) запросы не учитываются.
+ * Загрузки просмотров в виртуальных потоках EventViewsCache обращаются только к серверу
+ * статистики и SQL запросов не выполняют.
+ * Кроме общего количества учитываются повторы одного и того же запроса,
+ * многократный повтор обычно означает проблему N+1.
+ */
+public class StatementCounter implements StatementInspector {
+    private static final ThreadLocal<Statements> STATEMENTS = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Statements statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Начало подсчета запросов в текущем потоке
+     *
+     * @return - подсчет, который можно продолжить в другом потоке
+     */
+    public static Statements start() {
+        Statements statements = new Statements();
+        STATEMENTS.set(statements);
+        return statements;
+    }
+
+    /**
+     * Продолжение начатого подсчета в текущем потоке
+     *
+     * @param statements - подсчет, начатый в другом потоке
+     */
+    public static void resume(Statements statements) {
+        STATEMENTS.set(statements);
+    }
+
+    /**
+     * Окончание подсчета запросов в текущем потоке
+     */
+    public static void stop() {
+        STATEMENTS.remove();
+    }
+
+    /**
+     * SQL запросы, учтенные одним подсчетом.
+     * Подсчет может продолжаться в нескольких потоках, поэтому методы синхронизированы.
+     */
+    public static class Statements {
+        private int count;
+        private final Map<String, Integer> repeats = new HashMap<>();
+
+        synchronized void add(String sql) {
+            count++;
+            repeats.merge(sql, 1, Integer::sum);
+        }
+
+        public synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * Запрос, чаще других выполнявшийся с начала подсчета
+         *
+         * @return - текст запроса и количество его выполнений или null, если запросов не было
+         */
+        public synchronized Map.Entry<String, Integer> getMostRepeated() {
+            return repeats.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                    .orElse(null);
+        }
+    }
+}
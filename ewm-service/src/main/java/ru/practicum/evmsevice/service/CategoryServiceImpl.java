@@ -1,6 +1,9 @@
 package ru.practicum.evmsevice.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.evmsevice.dto.CategoryDto;
@@ -19,11 +22,15 @@ import java.util.List;
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class CategoryServiceImpl implements CategoryService {
+    public static final String CATEGORY_CACHE = "categories";
+    public static final String CATEGORY_LIST_CACHE = "categoryList";
+
     private final CategoryRepository categoryRepository;
     private final EventRepository eventRepository;
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
     public CategoryDto createCategory(NewCategoryDto categoryDto) {
         Category savedCategory = categoryRepository.save(CategoryMapper.toCategory(categoryDto));
         return CategoryMapper.toDto(savedCategory);
@@ -31,6 +38,10 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CATEGORY_CACHE, key = "#id"),
+            @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
+    })
     public CategoryDto updateCategory(Integer id, NewCategoryDto categoryDto) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Не найдена категория id=" + id));
@@ -41,6 +52,10 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CATEGORY_CACHE, key = "#id"),
+            @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
+    })
     public void deleteCategory(Integer id) {
         categoryRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Не найдена категория id=" + id));
@@ -53,7 +68,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-
+    @Cacheable(cacheNames = CATEGORY_CACHE)
     public Category getCategoryById(Integer id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Не найдена категория id=" + id));
@@ -61,6 +76,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
+    @Cacheable(cacheNames = CATEGORY_LIST_CACHE, key = "'all'")
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
@@ -62,24 +62,34 @@ public class CompilationServiceImpl implements CompilationService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public CompilationDto getCompilation(Integer compId) {
-        Compilation compilation = compilationRepository.findById(compId)
+        Compilation compilation = compilationRepository.findWithEventsById(compId)
                 .orElseThrow(() -> new NotFoundException("Не найдена подборка id=" + compId));
+        eventService.updateViwesAndRequests(List.copyOf(compilation.getEvents()));
         return CompilationMapper.toCompilationDto(compilation);
     }
 
+    /**
+     * Поиск подборок. Из базы выбираются идентификаторы запрошенной страницы,
+     * затем подборки загружаются вместе с событиями одним запросом,
+     * просмотры всех событий страницы заполняются одним обращением к статистике.
+     */
     @Override
+    @Transactional(readOnly = true)
     public List<CompilationDto> getCompilations(Boolean pinned, Integer from, Integer size) {
-        List<Compilation> compilations;
-        if (pinned != null) {
-            compilations = compilationRepository.findAllByPinnedEquals(pinned);
-        } else {
-            compilations = compilationRepository.findAll();
+        List<Integer> compilationIds = compilationRepository.findPageIds(pinned, from, size);
+        if (compilationIds.isEmpty()) {
+            return List.of();
         }
+        List<Compilation> compilations = compilationRepository.findAllWithEventsByIdInOrderById(compilationIds);
+        List<Event> events = compilations.stream()
+                .flatMap(compilation -> compilation.getEvents().stream())
+                .distinct()
+                .toList();
+        eventService.updateViwesAndRequests(events);
         return compilations.stream()
                 .map(CompilationMapper::toCompilationDto)
-                .skip(from)
-                .limit(size)
                 .toList();
     }
 }
@@ -0,0 +1,51 @@
+package ru.practicum.evmsevice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.evmsevice.model.ConfirmedRequestsDrift;
+import ru.practicum.evmsevice.repository.EventRepository;
+
+import java.util.List;
+
+/**
+ * Периодическая сверка счетчика подтвержденных заявок событий
+ * с таблицей заявок. Найденные расхождения выводятся в журнал,
+ * учитываются в метрике events.confirmed-requests.drift и исправляются.
+ * Перед пересчетом строка события блокируется отдельным запросом: пересчет
+ * выполняется после фиксации конкурирующих подтверждений заявок и видит их,
+ * иначе подзапрос по снимку UPDATE мог бы их пропустить и освободить занятые места.
+ * Расхождение, найденное во время незафиксированного подтверждения заявки, после блокировки
+ * исчезает: счетчик не меняется и в метрике не учитывается.
+ */
+@Slf4j
+@Service
+public class ConfirmedRequestsReconciler {
+    private final EventRepository eventRepository;
+    private final Counter driftCounter;
+
+    public ConfirmedRequestsReconciler(EventRepository eventRepository, MeterRegistry meterRegistry) {
+        this.eventRepository = eventRepository;
+        this.driftCounter = Counter.builder("events.confirmed-requests.drift")
+                .description("События с расхождением счетчика подтвержденных заявок")
+                .register(meterRegistry);
+    }
+
+    @Transactional
+    @Scheduled(initialDelayString = "${ewm.confirmed-requests.reconcile-initial-delay-ms:60000}",
+            fixedDelayString = "${ewm.confirmed-requests.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        List<ConfirmedRequestsDrift> drifts = eventRepository.findConfirmedRequestsDrift();
+        for (ConfirmedRequestsDrift drift : drifts) {
+            eventRepository.lockEvent(drift.getEventId());
+            if (eventRepository.recountConfirmedRequests(drift.getEventId()) > 0) {
+                log.warn("Расхождение счетчика подтвержденных заявок события id={}: сохранено {}, фактически {}.",
+                        drift.getEventId(), drift.getStored(), drift.getActual());
+                driftCounter.increment();
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ru.practicum.evmsevice.dto.*;
 import ru.practicum.evmsevice.model.Event;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface EventService {
     EventFullDto createEvent(NewEventDto newEventDto, Integer userId);
@@ -18,6 +19,14 @@ public interface EventService {
 
     Event findEventById(Integer eventId);
 
+    Event findEventByIdWithoutViews(Integer eventId);
+
+    void addConfirmedRequests(Integer eventId, int delta);
+
+    boolean reserveConfirmedRequests(Integer eventId, int count);
+
+    int reserveConfirmedRequestsUpTo(Integer eventId, int count);
+
     List<EventShortDto> findEventsByParametrs(String text,
                                               List<Integer> categories,
                                               Boolean paid,
@@ -25,6 +34,7 @@ public interface EventService {
                                               String rangeEnd,
                                               Boolean onlyAvailable,
                                               String sort,
+                                              String after,
                                               Integer from, Integer size);
 
     List<EventFullDto> findEventsByAdmin(List<String> states,
@@ -35,5 +45,16 @@ public interface EventService {
                                          Integer from,
                                          Integer size);
 
+    void checkAdminFilters(List<String> states, String rangeStart, String rangeEnd);
+
+    void exportEventsByAdmin(List<String> states,
+                             List<Integer> users,
+                             List<Integer> categories,
+                             String rangeStart,
+                             String rangeEnd,
+                             Consumer<List<EventFullDto>> consumer);
+
     List<Event> findEventsByIdIn(List<Integer> eventIds);
+
+    void updateViwesAndRequests(List<Event> events);
 }
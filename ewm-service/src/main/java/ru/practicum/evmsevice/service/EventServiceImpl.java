@@ -1,12 +1,17 @@
 package ru.practicum.evmsevice.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
-import ru.practicum.evmsevice.client.StatsClient;
+import ru.practicum.evmsevice.client.EventViewsCache;
 import ru.practicum.evmsevice.dto.*;
 import ru.practicum.evmsevice.enums.EventAdminAction;
 import ru.practicum.evmsevice.enums.EventState;
@@ -18,33 +23,37 @@ import ru.practicum.evmsevice.exception.ValidationException;
 import ru.practicum.evmsevice.mapper.EventMapper;
 import ru.practicum.evmsevice.model.Category;
 import ru.practicum.evmsevice.model.Event;
-import ru.practicum.evmsevice.model.EventConfirmedRequestCount;
 import ru.practicum.evmsevice.model.User;
 import ru.practicum.evmsevice.repository.EventRepository;
 import ru.practicum.evmsevice.repository.EventSpecification;
-import ru.practicum.evmsevice.repository.RequestRepository;
-import ru.practicum.statdto.StatsDto;
+import ru.practicum.evmsevice.repository.EventViewsRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
 @RequiredArgsConstructor
+@Timed("ewm.events.service")
 public class EventServiceImpl implements EventService {
     private static final DateTimeFormatter DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final Integer HOURS_EVENT_DELAY = 2;
+    private static final Sort EVENT_DATE_SORT = Sort.by("eventDate", "id");
 
     private final EventRepository eventRepository;
-    private final RequestRepository requestRepository;
+    private final EventViewsRepository eventViewsRepository;
     private final UserService userService;
     private final CategoryService categoryService;
-    private final StatsClient statsClient;
+    private final EventViewsCache eventViewsCache;
+    private final MeterRegistry meterRegistry;
+    @Value("${ewm.search.full-text:true}")
+    private boolean fullTextSearch;
+    @Value("${ewm.export.window-size:500}")
+    private int exportWindowSize;
 
     /**
      * Создание нового события
@@ -68,6 +77,7 @@ public class EventServiceImpl implements EventService {
         event.setInitiator(user);
         event.setCategory(category);
         Event savedEvent = eventRepository.save(event);
+        eventViewsRepository.createViews(savedEvent.getId());
         return EventMapper.toFullDto(savedEvent);
     }
 
@@ -85,8 +95,7 @@ public class EventServiceImpl implements EventService {
             throw new ValidationException("Пользователь id=" + userId
                     + " не является инициатором события id=" + eventId);
         }
-        event.setConfirmedRequests(requestRepository.getCountConfirmedRequestsByEventId(eventId));
-        event.setViews(statsClient.getEventViews(eventId, true));
+        event.setViews(eventViewsCache.getViews(eventId));
         return EventMapper.toFullDto(event);
     }
 
@@ -110,29 +119,28 @@ public class EventServiceImpl implements EventService {
     }
 
     /**
-     * Заполняем объекты списка событий сведениями о просмотрах и подтвержденных заявках
+     * Заполняем объекты списка событий сведениями о просмотрах.
+     * Количество подтвержденных заявок хранится в самом событии.
      *
      * @param events - список событий
      */
-    private void updateViwesAndRequests(List<Event> events) {
-        TreeMap<Integer, Event> eventMap = new TreeMap<>();
-        List<String> eventUris = new ArrayList<>();
+    @Override
+    public void updateViwesAndRequests(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Integer> eventIds = events.stream().map(Event::getId).toList();
+        DistributionSummary.builder("ewm.events.enrichment.size")
+                .description("Количество событий, дополняемых сведениями о просмотрах")
+                .register(meterRegistry)
+                .record(eventIds.size());
+        Map<Integer, Integer> views = Timer.builder("ewm.events.enrichment")
+                .description("Дополнение событий сведениями о просмотрах")
+                .tag("step", "views")
+                .register(meterRegistry)
+                .record(() -> eventViewsCache.getViews(eventIds));
         for (Event event : events) {
-            eventMap.put(event.getId(), event);
-            eventUris.add(String.format("/events/%d", event.getId()));
-        }
-        // заполняем количество заявок
-        List<EventConfirmedRequestCount> counts =
-                requestRepository.getCountConfirmedRequests(eventMap.keySet().stream().toList());
-        for (EventConfirmedRequestCount count : counts) {
-            Integer eventId = count.getEventId();
-            eventMap.get(eventId).setConfirmedRequests(count.getConfirmedRequestCount().intValue());
-        }
-        // заполняем количество просмотров
-        List<StatsDto> statsDtos = statsClient.getEventViewsByUris(eventUris, true);
-        for (StatsDto dto : statsDtos) {
-            Integer eventId = Integer.parseInt(dto.getUri().split("/")[2]);
-            eventMap.get(eventId).setViews(dto.getHits());
+            event.setViews(views.get(event.getId()));
         }
     }
 
@@ -208,8 +216,7 @@ public class EventServiceImpl implements EventService {
             event.setTitle(eventDto.getTitle());
         }
         Event savedEvent = eventRepository.save(event);
-        savedEvent.setConfirmedRequests(requestRepository.getCountConfirmedRequestsByEventId(eventId));
-        savedEvent.setViews(statsClient.getEventViews(eventId, true));
+        savedEvent.setViews(eventViewsCache.getViews(eventId));
         return EventMapper.toFullDto(savedEvent);
     }
 
@@ -297,8 +304,7 @@ public class EventServiceImpl implements EventService {
             event.setTitle(eventDto.getTitle());
         }
         Event savedEvent = eventRepository.save(event);
-        savedEvent.setConfirmedRequests(requestRepository.getCountConfirmedRequestsByEventId(eventId));
-        savedEvent.setViews(statsClient.getEventViews(eventId, true));
+        savedEvent.setViews(eventViewsCache.getViews(eventId));
         return EventMapper.toFullDto(savedEvent);
     }
 
@@ -307,8 +313,66 @@ public class EventServiceImpl implements EventService {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() ->
                         new NotFoundException("Не найдено событие id=" + eventId));
-        event.setConfirmedRequests(requestRepository.getCountConfirmedRequestsByEventId(eventId));
-        event.setViews(statsClient.getEventViews(eventId, true));
+        event.setViews(eventViewsCache.getViews(eventId));
+        return event;
+    }
+
+    /**
+     * Изменение счетчика подтвержденных заявок события
+     *
+     * @param eventId - идентификатор события
+     * @param delta   - величина изменения
+     */
+    @Override
+    public void addConfirmedRequests(Integer eventId, int delta) {
+        if (delta != 0) {
+            eventRepository.addConfirmedRequests(eventId, delta);
+        }
+    }
+
+    /**
+     * Резервирование мест для подтверждаемых заявок.
+     * Проверка лимита участников и увеличение счетчика выполняются одним
+     * условным UPDATE, поэтому конкурирующие подтверждения не могут
+     * превысить лимит: строка события блокируется только на время
+     * оставшейся части транзакции, без предварительного SELECT ... FOR UPDATE.
+     *
+     * @param eventId - идентификатор события
+     * @param count   - количество подтверждаемых заявок
+     * @return - true, если места зарезервированы
+     */
+    @Override
+    public boolean reserveConfirmedRequests(Integer eventId, int count) {
+        return eventRepository.reserveConfirmedRequests(eventId, count) > 0;
+    }
+
+    /**
+     * Резервирование не более count мест для подтверждаемых заявок.
+     * Если условный UPDATE не прошел из-за конкурирующих подтверждений,
+     * количество свободных мест перечитывается и попытка повторяется.
+     *
+     * @param eventId - идентификатор события
+     * @param count   - количество подтверждаемых заявок
+     * @return - количество зарезервированных мест
+     */
+    @Override
+    public int reserveConfirmedRequestsUpTo(Integer eventId, int count) {
+        int reserved = count;
+        while (reserved > 0 && !reserveConfirmedRequests(eventId, reserved)) {
+            reserved = Math.min(count, Math.max(0, eventRepository.getFreeSeats(eventId)));
+        }
+        return reserved;
+    }
+
+    /**
+     * Поиск события без запроса количества просмотров
+     * для внутренних проверок, которым просмотры не нужны
+     */
+    @Override
+    public Event findEventByIdWithoutViews(Integer eventId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() ->
+                        new NotFoundException("Не найдено событие id=" + eventId));
         return event;
     }
 
@@ -318,7 +382,8 @@ public class EventServiceImpl implements EventService {
     @Override
     public List<EventShortDto> findEventsByParametrs(String text, List<Integer> categories,
                                                      Boolean paid, String rangeStart, String rangeEnd,
-                                                     Boolean onlyAvailable, String sort, Integer from, Integer size) {
+                                                     Boolean onlyAvailable, String sort, String after,
+                                                     Integer from, Integer size) {
         LocalDateTime startDate = null;
         LocalDateTime endDate = null;
 
@@ -355,7 +420,11 @@ public class EventServiceImpl implements EventService {
         Specification<Event> spec = Specification.where(null);
         // Задаем спецификации для поиска событий
         // ...поиск событий по тексту в аннотации и подробном описании события
-        if (text != null) {
+        // (полнотекстовый поиск по индексу или, если он отключен, поиск по подстроке)
+        boolean textSearch = text != null && !text.isBlank();
+        if (textSearch && fullTextSearch) {
+            spec = spec.and(EventSpecification.textMatches(text));
+        } else if (textSearch) {
             spec = spec.and(EventSpecification.annotetionContains(text));
             spec = spec.or(EventSpecification.descriptionContains(text));
         }
@@ -374,31 +443,63 @@ public class EventServiceImpl implements EventService {
         if (endDate != null) {
             spec = spec.and(EventSpecification.eventDateBefore(endDate));
         }
+        // ... поиск событий с неисчерпанным лимитом участников
+        if (onlyAvailable) {
+            spec = spec.and(EventSpecification.participantLimitNotReached());
+        }
 
-        List<Event> events = eventRepository.findAll(spec,
-                Sort.by("eventDate"));
+        // порядок по популярности берется из таблицы event_views,
+        // которую периодически обновляет EventViewsSynchronizer
+        if (sort.equalsIgnoreCase("VIEWS")) {
+            List<Event> events = eventRepository.findPageOrderByViews(spec, from, size);
+            if (events.isEmpty()) {
+                return List.of();
+            }
+            updateViwesAndRequests(events);
+            return events.stream().map(EventMapper::toShortDto).toList();
+        }
+
+        // сортировка по релевантности доступна только для полнотекстового поиска
+        if (sort.equalsIgnoreCase("RELEVANCE") && textSearch && fullTextSearch) {
+            List<Event> events = eventRepository.findPageOrderByRelevance(spec, text, from, size);
+            if (events.isEmpty()) {
+                return List.of();
+            }
+            updateViwesAndRequests(events);
+            return events.stream().map(EventMapper::toShortDto).toList();
+        }
+
+        // при сортировке по дате из базы выбирается только запрошенная страница,
+        // курсор after позволяет листать дальние страницы без пропуска строк
+        long offset = from;
+        if (after != null && !after.isEmpty()) {
+            spec = spec.and(parseCursor(after));
+            offset = 0;
+        }
+        List<Event> events = eventRepository.findPage(spec, EVENT_DATE_SORT, offset, size);
         if (events.isEmpty()) {
             return List.of();
         }
         updateViwesAndRequests(events);
-        List<EventShortDto> eventDtos;
-        if (onlyAvailable) {
-            // Фильтруем события у которых не исчерпано количество заявок
-            eventDtos = events.stream()
-                    .filter(event -> event.getParticipantLimit() != 0
-                            && event.getConfirmedRequests() < event.getParticipantLimit())
-                    .map(EventMapper::toShortDto)
-                    .toList();
-        } else {
-            eventDtos = events.stream().map(EventMapper::toShortDto).toList();
-        }
+        return events.stream().map(EventMapper::toShortDto).toList();
+    }
 
-        if (sort.equalsIgnoreCase("VIEWS")) {
-            return eventDtos.stream()
-                    .sorted(Comparator.comparing(EventShortDto::getViews).reversed())
-                    .skip(from).limit(size).toList();
+    /**
+     * Разбор курсора постраничного просмотра вида "yyyy-MM-dd HH:mm:ss,id",
+     * где eventDate и id - значения последнего события предыдущей страницы
+     */
+    private Specification<Event> parseCursor(String after) {
+        int separator = after.lastIndexOf(',');
+        if (separator < 0) {
+            throw new ValidationException("Некорректный формат курсора. Value: " + after);
+        }
+        try {
+            LocalDateTime eventDate = LocalDateTime.parse(after.substring(0, separator).trim(), DATA_TIME_FORMATTER);
+            Integer id = Integer.parseInt(after.substring(separator + 1).trim());
+            return EventSpecification.afterCursor(eventDate, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ValidationException("Некорректный формат курсора. " + e.getMessage());
         }
-        return eventDtos.stream().skip(from).limit(size).toList();
     }
 
     /**
@@ -412,6 +513,85 @@ public class EventServiceImpl implements EventService {
                                                 String rangeEnd,
                                                 Integer from,
                                                 Integer size) {
+        Specification<Event> spec = adminSpecification(states, users, categories, rangeStart, rangeEnd);
+        List<Event> events = eventRepository.findPage(spec, EVENT_DATE_SORT, from, size);
+        if (events.isEmpty()) {
+            return List.of();
+        }
+        updateViwesAndRequests(events);
+        return events.stream()
+                .map(EventMapper::toFullDto)
+                .toList();
+    }
+
+    /**
+     * Выгрузка всех событий, найденных по условиям администратора.
+     * События читаются курсором и передаются обработчику окнами по windowSize событий,
+     * сведения о просмотрах запрашиваются для каждого окна.
+     *
+     * @param consumer - обработчик окна событий
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportEventsByAdmin(List<String> states,
+                                    List<Integer> users,
+                                    List<Integer> categories,
+                                    String rangeStart,
+                                    String rangeEnd,
+                                    Consumer<List<EventFullDto>> consumer) {
+        Specification<Event> spec = adminSpecification(states, users, categories, rangeStart, rangeEnd);
+        eventRepository.scroll(spec, EVENT_DATE_SORT, exportWindowSize, events -> {
+            updateViwesAndRequests(events);
+            consumer.accept(events.stream()
+                    .map(EventMapper::toFullDto)
+                    .toList());
+        });
+    }
+
+    /**
+     * Проверка условий поиска событий администратором.
+     * Выгрузка проверяет условия до начала передачи ответа, пока клиенту еще можно вернуть ошибку.
+     */
+    @Override
+    public void checkAdminFilters(List<String> states, String rangeStart, String rangeEnd) {
+        LocalDateTime startDate = null;
+        LocalDateTime endDate = null;
+        try {
+            if (rangeStart != null && !rangeStart.isEmpty()) {
+                startDate = LocalDateTime.parse(rangeStart, DATA_TIME_FORMATTER);
+            }
+            if (rangeEnd != null && !rangeEnd.isEmpty()) {
+                endDate = LocalDateTime.parse(rangeEnd, DATA_TIME_FORMATTER);
+            }
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Некорректный формат времени. " + e.getMessage());
+        }
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new BadRequestException(
+                    "Parameter: rangeStart, rangeEnd. " +
+                            "Error: Введен некорректный интервал времени." +
+                            ". Value: " + startDate.format(DATA_TIME_FORMATTER) +
+                            ", " + endDate.format(DATA_TIME_FORMATTER)
+            );
+        }
+        if (states != null) {
+            for (String state : states) {
+                try {
+                    EventState.valueOf(state);
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException("Parameter: states. Error: неизвестное состояние события. "
+                            + "Value: " + state);
+                }
+            }
+        }
+    }
+
+    private Specification<Event> adminSpecification(List<String> states,
+                                                     List<Integer> users,
+                                                     List<Integer> categories,
+                                                     String rangeStart,
+                                                     String rangeEnd) {
+        checkAdminFilters(states, rangeStart, rangeEnd);
         LocalDateTime startDate = null;
         LocalDateTime endDate = null;
         try {
@@ -449,17 +629,7 @@ public class EventServiceImpl implements EventService {
         if (endDate != null) {
             spec = spec.and(EventSpecification.eventDateBefore(endDate));
         }
-
-        List<Event> events = eventRepository.findAll(spec,
-                Sort.by("eventDate"));
-        if (events.isEmpty()) {
-            return List.of();
-        }
-        updateViwesAndRequests(events);
-        List<EventFullDto> eventDtos = events.stream()
-                .map(EventMapper::toFullDto)
-                .toList();
-        return eventDtos.stream().skip(from).limit(size).toList();
+        return spec;
     }
 
     /**
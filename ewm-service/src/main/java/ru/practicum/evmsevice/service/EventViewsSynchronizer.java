@@ -0,0 +1,57 @@
+package ru.practicum.evmsevice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.evmsevice.client.StatsClient;
+import ru.practicum.evmsevice.repository.EventRepository;
+import ru.practicum.evmsevice.repository.EventViewsRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Периодическая загрузка количества просмотров опубликованных событий
+ * с сервера статистики в таблицу event_views
+ */
+@Slf4j
+@Service
+public class EventViewsSynchronizer {
+    private final EventRepository eventRepository;
+    private final EventViewsRepository eventViewsRepository;
+    private final StatsClient statsClient;
+    private final int batchSize;
+
+    public EventViewsSynchronizer(EventRepository eventRepository,
+                                  EventViewsRepository eventViewsRepository,
+                                  StatsClient statsClient,
+                                  @Value("${ewm.popularity.batch-size:5000}") int batchSize) {
+        this.eventRepository = eventRepository;
+        this.eventViewsRepository = eventViewsRepository;
+        this.statsClient = statsClient;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${ewm.popularity.initial-delay-ms:10000}",
+            fixedDelayString = "${ewm.popularity.sync-interval-ms:60000}")
+    public void synchronize() {
+        List<Integer> eventIds = eventRepository.findPublishedEventIds();
+        for (int i = 0; i < eventIds.size(); i += batchSize) {
+            List<Integer> batch = eventIds.subList(i, Math.min(eventIds.size(), i + batchSize));
+            // события без просмотров в ответе отсутствуют, в сортировке они считаются
+            // непросмотренными; при недоступности сервера сохраненные значения не затираются
+            Map<Integer, Long> views = new HashMap<>();
+            try {
+                statsClient.getEventViewsByIds(batch, true)
+                        .forEach((eventId, hits) -> views.put(eventId, hits.longValue()));
+            } catch (RuntimeException e) {
+                log.warn("Обновление просмотров событий прервано. {}", e.getMessage());
+                return;
+            }
+            eventViewsRepository.upsertViews(views);
+        }
+        log.debug("Обновлено количество просмотров {} событий.", eventIds.size());
+    }
+}
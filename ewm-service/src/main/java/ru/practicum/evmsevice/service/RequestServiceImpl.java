@@ -18,8 +18,11 @@ import ru.practicum.evmsevice.model.User;
 import ru.practicum.evmsevice.repository.RequestRepository;
 
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -31,7 +34,7 @@ public class RequestServiceImpl implements RequestService {
 
     @Override
     public Request createRequest(Integer userId, Integer eventId) {
-        Event event = eventService.findEventById(eventId);
+        Event event = eventService.findEventByIdWithoutViews(eventId);
         if (event.getInitiator().getId().equals(userId)) {
             throw new DataConflictException(
                     "Field: event.initiator_id. Error: " +
@@ -65,6 +68,17 @@ public class RequestServiceImpl implements RequestService {
             request.setStatus(RequestStatus.CONFIRMED);
         }
         request.setCreated(LocalDateTime.now());
+        // место резервируется до сохранения заявки: транзакции, ожидающие строку события,
+        // не успевают сохранить заявки и не конкурируют за процессор с держателем блокировки
+        // (сравнение в сценарии reservation модуля load-tests)
+        if (request.getStatus().equals(RequestStatus.CONFIRMED)
+                && !eventService.reserveConfirmedRequests(eventId, 1)) {
+            throw new DataConflictException(
+                    "Field: event.state. Error: " +
+                            "У события достигнут лимит запросов на участие. " +
+                            "Value: " + event.getParticipantLimit()
+            );
+        }
         return requestRepository.save(request);
     }
 
@@ -90,8 +104,13 @@ public class RequestServiceImpl implements RequestService {
                             "Value: " + request.getRequester().getId()
             );
         }
+        RequestStatus previousStatus = request.getStatus();
         request.setStatus(RequestStatus.CANCELED);
-        return requestRepository.save(request);
+        Request savedRequest = requestRepository.save(request);
+        if (previousStatus.equals(RequestStatus.CONFIRMED)) {
+            eventService.addConfirmedRequests(request.getEvent().getId(), -1);
+        }
+        return savedRequest;
     }
 
     /**
@@ -99,7 +118,7 @@ public class RequestServiceImpl implements RequestService {
      */
     @Override
     public List<Request> getRequestsByEventId(Integer userId, Integer eventId) {
-        Event event = eventService.findEventById(eventId);
+        Event event = eventService.findEventByIdWithoutViews(eventId);
         if (!event.getInitiator().getId().equals(userId)) {
             throw new ValidationException(
                     "Field: event.initiator_id. " +
@@ -115,7 +134,7 @@ public class RequestServiceImpl implements RequestService {
      */
     @Override
     public RequestGroupDto updateRequestsStatus(Integer userId, Integer eventId, RequestUpdateDto requestUpdateDto) {
-        Event event = eventService.findEventById(eventId);
+        Event event = eventService.findEventByIdWithoutViews(eventId);
         if (!event.getInitiator().getId().equals(userId)) {
             throw new ValidationException(
                     "Field: event.initiator_id. Error: " +
@@ -126,7 +145,7 @@ public class RequestServiceImpl implements RequestService {
 
         // ...нельзя подтвердить заявку, если уже достигнут лимит по заявкам на данное событие
         // (Ожидается код ошибки 409)
-        Integer confirmedRequests = requestRepository.getCountConfirmedRequestsByEventId(eventId);
+        Integer confirmedRequests = event.getConfirmedRequests();
         if ((event.getParticipantLimit() > 0)
                 && event.getParticipantLimit().equals(confirmedRequests)) {
             throw new DataConflictException(
@@ -141,13 +160,18 @@ public class RequestServiceImpl implements RequestService {
         if (requestIds.isEmpty()) {
             return requestGroupDto;
         }
-        Collections.sort(requestIds);
+        requestIds = requestIds.stream().distinct().sorted().toList();
         RequestStatus status = requestUpdateDto.getStatus();
 
-        // Проверяем заявки из списка
+        // Загружаем все заявки из списка одним запросом
+        Map<Integer, Request> requests = requestRepository.findAllById(requestIds).stream()
+                .collect(Collectors.toMap(Request::getId, Function.identity()));
+        List<RequestDto> requestDtos = new ArrayList<>();
         for (Integer requestId : requestIds) {
-            Request request = requestRepository.findById(requestId)
-                    .orElseThrow(() -> new NotFoundException("Не найдена заявка id=" + requestId));
+            Request request = requests.get(requestId);
+            if (request == null) {
+                throw new NotFoundException("Не найдена заявка id=" + requestId);
+            }
             // ... статус можно изменить только у заявок, находящихся в состоянии ожидания
             // (Ожидается код ошибки 409)
             if (!request.getStatus().equals(RequestStatus.PENDING)) {
@@ -157,18 +181,38 @@ public class RequestServiceImpl implements RequestService {
                                 ". Value: " + request.getStatus()
                 );
             }
-            // ... если при подтверждении данной заявки, лимит заявок для события исчерпан,
-            // то все неподтверждённые заявки необходимо отклонить
-            if (confirmedRequests.equals(event.getParticipantLimit())) {
-                status = RequestStatus.REJECTED;
-            }
-            request.setStatus(status);
-            Request savedRequest = requestRepository.save(request);
-            if (savedRequest.getStatus().equals(RequestStatus.CONFIRMED)) {
-                requestGroupDto.getConfirmedRequests().add(RequestMapper.toRequestDto(savedRequest));
-                confirmedRequests++;
-            } else if (savedRequest.getStatus().equals(RequestStatus.REJECTED)) {
-                requestGroupDto.getRejectedRequests().add(RequestMapper.toRequestDto(savedRequest));
+            requestDtos.add(RequestMapper.toRequestDto(request));
+        }
+
+        // ... если при подтверждении заявок лимит для события исчерпан,
+        // то все оставшиеся неподтверждённые заявки необходимо отклонить
+        int accepted = requestIds.size();
+        if (status.equals(RequestStatus.CONFIRMED)) {
+            accepted = eventService.reserveConfirmedRequestsUpTo(eventId, requestIds.size());
+        }
+        int updated = 0;
+        if (accepted > 0) {
+            updated += requestRepository.updatePendingStatus(requestIds.subList(0, accepted), status);
+        }
+        if (accepted < requestIds.size()) {
+            updated += requestRepository.updatePendingStatus(requestIds.subList(accepted, requestIds.size()),
+                    RequestStatus.REJECTED);
+        }
+        // статус части заявок изменен параллельным запросом, изменения откатываются
+        if (updated != requestIds.size()) {
+            throw new DataConflictException(
+                    "Field: request.status. " +
+                            "Error: статус заявок события id=" + eventId + " изменен параллельным запросом."
+            );
+        }
+
+        for (int i = 0; i < requestDtos.size(); i++) {
+            RequestDto requestDto = requestDtos.get(i);
+            requestDto.setStatus(i < accepted ? status : RequestStatus.REJECTED);
+            if (requestDto.getStatus().equals(RequestStatus.CONFIRMED)) {
+                requestGroupDto.getConfirmedRequests().add(requestDto);
+            } else if (requestDto.getStatus().equals(RequestStatus.REJECTED)) {
+                requestGroupDto.getRejectedRequests().add(requestDto);
             }
         }
         return requestGroupDto;
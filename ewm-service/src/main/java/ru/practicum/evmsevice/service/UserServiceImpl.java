@@ -1,5 +1,8 @@
 package ru.practicum.evmsevice.service;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.evmsevice.exception.NotFoundException;
@@ -11,6 +14,8 @@ import java.util.List;
 @Service
 @Transactional
 public class UserServiceImpl implements UserService {
+    public static final String USER_CACHE = "users";
+
     private final UserRepository userRepository;
 
     public UserServiceImpl(UserRepository userRepository) {
@@ -18,6 +23,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @CachePut(cacheNames = USER_CACHE, key = "#result.id")
     public User addUser(User user) {
         User savedUser = userRepository.save(user);
         return savedUser;
@@ -34,6 +40,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Cacheable(cacheNames = USER_CACHE)
     public User getUserById(Integer id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() ->
@@ -42,6 +49,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @CacheEvict(cacheNames = USER_CACHE, key = "#id")
     public void deleteUser(Integer id) {
         userRepository.findById(id)
                 .orElseThrow(() ->
@@ -79,4 +79,4 @@ CREATE TABLE IF NOT EXISTS comments
     edited_on  TIMESTAMP WITHOUT TIME ZONE,
     CONSTRAINT pk_comment PRIMARY KEY (id),
     CONSTRAINT fk_event_for_comment FOREIGN KEY (event_id) REFERENCES events (id)
-);
\ No newline at end of file
+);
@@ -0,0 +1,36 @@
+-- счетчик подтвержденных заявок, индекс популярности и полнотекстовый поиск событий.
+-- Скрипт идемпотентен: базы, созданные до перехода на миграции, могли уже содержать эти объекты.
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests INTEGER DEFAULT 0 NOT NULL;
+
+-- пересчет счетчика подтвержденных заявок у событий, созданных до его появления
+UPDATE events e
+SET confirmed_requests = c.confirmed
+FROM (SELECT event_id, COUNT(*) AS confirmed FROM requests WHERE status = 'CONFIRMED' GROUP BY event_id) c
+WHERE e.id = c.event_id
+  AND e.confirmed_requests <> c.confirmed;
+
+CREATE TABLE IF NOT EXISTS event_views
+(
+    event_id   INTEGER NOT NULL,
+    views      BIGINT  NOT NULL,
+    updated_on TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_event_views PRIMARY KEY (event_id),
+    CONSTRAINT fk_event_views_to_events FOREIGN KEY (event_id) REFERENCES events (id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS ix_event_views_views ON event_views (views DESC, event_id);
+
+-- документ полнотекстового поиска по аннотации и описанию события хранится в вычисляемом столбце:
+-- индекс по выражению пересчитывал бы to_tsvector при перепроверке строк неточного битового образа
+-- и в ts_rank. Столбец читают функции fts_match и fts_rank (FullTextSearchFunctionContributor),
+-- в сущность Event он не отображается.
+ALTER TABLE events ADD COLUMN IF NOT EXISTS search_vector TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', coalesce(annotation, '')), 'A')
+        || setweight(to_tsvector('russian', coalesce(description, '')), 'B')) STORED;
+
+CREATE INDEX IF NOT EXISTS ix_events_search_vector ON events USING GIN (search_vector);
+
+-- без статистики по новому столбцу планировщик считает условие fts_match
+-- малоизбирательным и перебирает события по дате
+ANALYZE events;
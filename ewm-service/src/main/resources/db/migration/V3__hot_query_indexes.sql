@@ -0,0 +1,23 @@
+-- индексы для запросов репозиториев EventRepository, RequestRepository, CommentRepository
+
+-- поиск событий по дате (EventSpecification.eventDateAfter/Before),
+-- сортировка по дате и курсор постраничного просмотра
+CREATE INDEX IF NOT EXISTS ix_events_eventdate_id ON events (eventDate, id);
+-- поиск администратором по состоянию, выборка опубликованных событий
+CREATE INDEX IF NOT EXISTS ix_events_state_eventdate ON events (state, eventDate);
+-- findEventsByCategory_Id, EventSpecification.categoryIn
+CREATE INDEX IF NOT EXISTS ix_events_category_id ON events (category_id);
+-- findEventsByInitiator_Id, EventSpecification.eventInitiatorIdIn
+CREATE INDEX IF NOT EXISTS ix_events_initiator_id ON events (initiator_id);
+
+-- findAllByEvent_Id, пересчет подтвержденных заявок по статусу;
+-- поиск по requester_id покрывает ограничение unique_requester_event
+CREATE INDEX IF NOT EXISTS ix_requests_event_id_status ON requests (event_id, status);
+
+-- события подборки: первичный ключ eventlinks начинается с event_id
+CREATE INDEX IF NOT EXISTS ix_eventlinks_compilation_id ON eventlinks (compilation_id);
+
+-- findAllByEventId, CommentSpecification по событию, состоянию и дате создания
+CREATE INDEX IF NOT EXISTS ix_comments_event_id_state_created_on ON comments (event_id, state, created_on);
+-- findAllByAuthor_Id, CommentSpecification.commentAuthorIdIn
+CREATE INDEX IF NOT EXISTS ix_comments_author_id ON comments (author_id);
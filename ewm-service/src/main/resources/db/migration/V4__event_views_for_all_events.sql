@@ -0,0 +1,8 @@
+-- строка просмотров для каждого события: сортировка по популярности соединяет
+-- events и event_views внутренним соединением и читает страницу по ix_event_views_views.
+-- Новым событиям строка добавляется при создании (EventViewsRepository.createViews).
+
+INSERT INTO event_views (event_id, views)
+SELECT id, 0
+FROM events
+ON CONFLICT (event_id) DO NOTHING;
@@ -0,0 +1,92 @@
+package ru.practicum.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Http клиент нагрузочного теста
+ */
+public class ApiClient {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ApiClient() {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Результат запроса
+     *
+     * @param status - код ответа, -1 при ошибке соединения
+     * @param body   - тело ответа
+     */
+    public record Response(int status, String body) {
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public Response get(String url) {
+        return send(HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET().build());
+    }
+
+    public Response post(String url, Object body) {
+        return send(withBody(url, body).POST(bodyPublisher(body)).build());
+    }
+
+    public Response patch(String url, Object body) {
+        return send(withBody(url, body).method("PATCH", bodyPublisher(body)).build());
+    }
+
+    public JsonNode readTree(Response response) {
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new IllegalStateException("Некорректный ответ сервера: " + response.body(), e);
+        }
+    }
+
+    private HttpRequest.Builder withBody(String url, Object body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT);
+        if (body != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        return builder;
+    }
+
+    private HttpRequest.BodyPublisher bodyPublisher(Object body) {
+        if (body == null) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private Response send(HttpRequest request) {
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            return new Response(response.statusCode(), response.body());
+        } catch (IOException e) {
+            return new Response(-1, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, e.toString());
+        }
+    }
+}
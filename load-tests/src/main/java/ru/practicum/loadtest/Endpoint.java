@@ -0,0 +1,15 @@
+package ru.practicum.loadtest;
+
+/**
+ * Нагружаемые эндпоинты
+ */
+public enum Endpoint {
+    // GET /events - поиск опубликованных событий
+    EVENTS_SEARCH,
+    // GET /events/{id} - просмотр события
+    EVENT_BY_ID,
+    // POST /users/{userId}/requests - заявка на участие
+    CREATE_REQUEST,
+    // GET /stats - статистика просмотров на сервере статистики
+    STATS
+}
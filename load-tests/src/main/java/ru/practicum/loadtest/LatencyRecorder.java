@@ -0,0 +1,98 @@
+package ru.practicum.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Задержки и коды ответов одного эндпоинта.
+ * Задержки успешных ответов (2xx) хранятся еще и отдельно: отказы 4xx выполняются быстрее
+ * и без этого скрывали бы время выполнения самой операции.
+ * Каждый клиент пишет в собственный экземпляр, экземпляры объединяются после завершения теста.
+ */
+public class LatencyRecorder {
+    private final Latencies all = new Latencies();
+    private final Latencies successful = new Latencies();
+    private int clientErrors;
+    private int serverErrors;
+
+    public void record(long latencyNanos, int status) {
+        all.add(latencyNanos);
+        if (status >= 200 && status < 300) {
+            successful.add(latencyNanos);
+        } else if (status >= 500 || status < 0) {
+            serverErrors++;
+        } else if (status >= 400) {
+            clientErrors++;
+        }
+    }
+
+    public void merge(LatencyRecorder other) {
+        all.addAll(other.all);
+        successful.addAll(other.successful);
+        clientErrors += other.clientErrors;
+        serverErrors += other.serverErrors;
+    }
+
+    public int getCount() {
+        return all.count;
+    }
+
+    public int getSuccessCount() {
+        return successful.count;
+    }
+
+    public int getClientErrors() {
+        return clientErrors;
+    }
+
+    public int getServerErrors() {
+        return serverErrors;
+    }
+
+    /**
+     * Задержки заданных процентилей в миллисекундах
+     */
+    public double[] percentilesMs(double... percentiles) {
+        return all.percentilesMs(percentiles);
+    }
+
+    /**
+     * Задержки заданных процентилей успешных ответов в миллисекундах
+     */
+    public double[] successPercentilesMs(double... percentiles) {
+        return successful.percentilesMs(percentiles);
+    }
+
+    private static class Latencies {
+        private long[] values = new long[1024];
+        private int count;
+
+        void add(long latencyNanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = latencyNanos;
+        }
+
+        void addAll(Latencies other) {
+            if (count + other.count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, count + other.count));
+            }
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count += other.count;
+        }
+
+        double[] percentilesMs(double... percentiles) {
+            double[] result = new double[percentiles.length];
+            if (count == 0) {
+                return result;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            for (int i = 0; i < percentiles.length; i++) {
+                int index = (int) Math.ceil(percentiles[i] / 100.0 * count) - 1;
+                result[i] = sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ru.practicum.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузочный тест основного сервиса и сервера статистики.
+ * Заполняет сервис данными через API, затем заданное количество клиентов
+ * выполняет смесь запросов к эндпоинтам Endpoint. По каждому эндпоинту выводятся
+ * пропускная способность и процентили задержки всех и успешных ответов, результаты дописываются
+ * в CSV файл для сравнения запусков между собой.
+ */
+public class LoadTestApp {
+    private static final DateTimeFormatter DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] SORTS = {"EVENT_DATE", "VIEWS"};
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+    private final LoadTestConfig config;
+    private final ApiClient client = new ApiClient();
+    private final int mixTotal;
+    private Seeder seeder;
+    private Seeder.SeedData data;
+
+    public LoadTestApp(LoadTestConfig config) {
+        this.config = config;
+        int total = 0;
+        for (int weight : config.mix()) {
+            total += weight;
+        }
+        this.mixTotal = total;
+    }
+
+    public static void main(String[] args) throws InterruptedException, SQLException {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        if (config.scenario().equals("oversubscription")) {
+            if (!new OversubscriptionScenario(new ApiClient(), config).run()) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (config.scenario().equals("reservation")) {
+            if (!new ReservationScenario(new ApiClient(), config).run()) {
+                System.exit(1);
+            }
+            return;
+        }
+        new LoadTestApp(config).run();
+    }
+
+    public void run() throws InterruptedException {
+        System.out.printf("Заполнение данных: %d пользователей, %d событий, %d комментариев.%n",
+                config.users(), config.events(), config.comments());
+        seeder = new Seeder(client, config);
+        data = seeder.seed();
+        if (config.warmupSec() > 0) {
+            System.out.printf("Прогрев %d с.%n", config.warmupSec());
+            runPhase(config.warmupSec());
+        }
+        System.out.printf("Измерение %d с, %d клиентов.%n", config.durationSec(), config.virtualUsers());
+        Map<Endpoint, LatencyRecorder> results = runPhase(config.durationSec());
+        report(results);
+    }
+
+    /**
+     * Выполнение смеси запросов всеми клиентами в течение заданного времени
+     */
+    private Map<Endpoint, LatencyRecorder> runPhase(int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Map<Endpoint, LatencyRecorder>> perClient = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < config.virtualUsers(); i++) {
+            Map<Endpoint, LatencyRecorder> recorders = newRecorders();
+            perClient.add(recorders);
+            threads.add(Thread.ofVirtual().name("load-client-" + i).start(() -> {
+                while (System.nanoTime() < deadline) {
+                    Endpoint endpoint = nextEndpoint();
+                    IntSupplier call = prepare(endpoint);
+                    long started = System.nanoTime();
+                    int status = call.getAsInt();
+                    recorders.get(endpoint).record(System.nanoTime() - started, status);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Endpoint, LatencyRecorder> merged = newRecorders();
+        for (Map<Endpoint, LatencyRecorder> recorders : perClient) {
+            recorders.forEach((endpoint, recorder) -> merged.get(endpoint).merge(recorder));
+        }
+        return merged;
+    }
+
+    private Endpoint nextEndpoint() {
+        int value = ThreadLocalRandom.current().nextInt(mixTotal);
+        Endpoint[] endpoints = Endpoint.values();
+        for (int i = 0; i < endpoints.length; i++) {
+            value -= config.mix()[i];
+            if (value < 0) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    /**
+     * Подготовка запроса к эндпоинту, время подготовки в задержку не входит
+     *
+     * @return - запрос, возвращающий код ответа
+     */
+    private IntSupplier prepare(Endpoint endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer eventId = data.eventIds().get(random.nextInt(data.eventIds().size()));
+        return switch (endpoint) {
+            case EVENTS_SEARCH -> {
+                String url = config.ewmUrl() + "/events?size=10&from="
+                        + 10 * random.nextInt(Math.max(1, data.eventIds().size() / 10))
+                        + "&sort=" + SORTS[random.nextInt(SORTS.length)];
+                yield () -> client.get(url).status();
+            }
+            case EVENT_BY_ID -> () -> client.get(config.ewmUrl() + "/events/" + eventId).status();
+            case CREATE_REQUEST -> {
+                // новый участник на каждую заявку: заявки заполненных пользователей
+                // быстро упираются в повторную заявку и отвечают 409 вместо создания заявки
+                Integer userId = seeder.createUser();
+                yield () -> client.post(config.ewmUrl() + "/users/" + userId + "/requests?eventId=" + eventId, null)
+                        .status();
+            }
+            case STATS -> {
+                LocalDateTime now = LocalDateTime.now();
+                String url = config.statsUrl() + "/stats?unique=true&uris=/events/" + eventId
+                        + "&start=" + encode(now.minusDays(1).format(DATA_TIME_FORMATTER))
+                        + "&end=" + encode(now.plusDays(1).format(DATA_TIME_FORMATTER));
+                yield () -> client.get(url).status();
+            }
+        };
+    }
+
+    private void report(Map<Endpoint, LatencyRecorder> results) {
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %9s %7s %7s %9s %9s %9s%n",
+                "endpoint", "requests", "rps", "p50 ms", "p90 ms", "p99 ms", "max ms", "4xx", "5xx",
+                "2xx", "2xx p50", "2xx p99");
+        List<String> lines = new ArrayList<>();
+        String timestamp = LocalDateTime.now().format(DATA_TIME_FORMATTER);
+        for (Map.Entry<Endpoint, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            double rps = (double) recorder.getCount() / config.durationSec();
+            double[] p = recorder.percentilesMs(PERCENTILES);
+            double[] s = recorder.successPercentilesMs(PERCENTILES);
+            System.out.printf(Locale.ROOT, "%-16s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %9d %9.2f %9.2f%n",
+                    entry.getKey(), recorder.getCount(), rps, p[0], p[1], p[2], p[3],
+                    recorder.getClientErrors(), recorder.getServerErrors(),
+                    recorder.getSuccessCount(), s[0], s[2]);
+            lines.add(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%d,%d,%d,%.2f,%.2f,%.2f",
+                    timestamp, config.label(), entry.getKey(), config.virtualUsers(), recorder.getCount(), rps,
+                    p[0], p[1], p[2], p[3], recorder.getClientErrors(), recorder.getServerErrors(),
+                    recorder.getSuccessCount(), s[0], s[1], s[2]));
+        }
+        Path report = Path.of(config.report());
+        try {
+            if (Files.notExists(report)) {
+                Files.writeString(report,
+                        "timestamp,label,endpoint,vus,requests,rps,p50_ms,p90_ms,p99_ms,max_ms,4xx,5xx,"
+                                + "2xx,2xx_p50_ms,2xx_p90_ms,2xx_p99_ms\n");
+            }
+            Files.write(report, lines, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.printf("Результаты добавлены в %s.%n", report.toAbsolutePath());
+    }
+
+    private static Map<Endpoint, LatencyRecorder> newRecorders() {
+        Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new LatencyRecorder());
+        }
+        return recorders;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста, задаются аргументами вида --name=value
+ *
+ * @param ewmUrl       - адрес основного сервиса
+ * @param statsUrl     - адрес сервера статистики
+ * @param users        - количество пользователей, создаваемых при заполнении
+ * @param events       - количество опубликованных событий
+ * @param comments     - количество комментариев
+ * @param virtualUsers - количество одновременно работающих клиентов
+ * @param warmupSec    - продолжительность прогрева, результаты прогрева не учитываются
+ * @param durationSec  - продолжительность измерения
+ * @param mix          - доли запросов в смеси в порядке перечисления Endpoint
+ * @param label        - метка запуска в отчете
+ * @param report       - файл CSV, в который дописываются результаты запуска
+ * @param scenario     - mix - смесь запросов, oversubscription - проверка лимита участников,
+ *                     reservation - сравнение способов резервирования мест
+ * @param limit        - лимит участников события в сценарии oversubscription
+ * @param concurrent   - количество одновременных заявок в сценарии oversubscription
+ * @param db           - адрес базы данных основного сервиса для сценария reservation
+ * @param dbUser       - пользователь базы данных
+ * @param dbPassword   - пароль пользователя базы данных
+ * @param requesters   - количество участников, создаваемых в сценарии reservation
+ */
+public record LoadTestConfig(String ewmUrl,
+                             String statsUrl,
+                             int users,
+                             int events,
+                             int comments,
+                             int virtualUsers,
+                             int warmupSec,
+                             int durationSec,
+                             int[] mix,
+                             String label,
+                             String report,
+                             String scenario,
+                             int limit,
+                             int concurrent,
+                             String db,
+                             String dbUser,
+                             String dbPassword,
+                             int requesters) {
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Аргумент должен иметь вид --name=value: " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        String[] mixValues = values.getOrDefault("mix", "40,40,10,10").split(",");
+        if (mixValues.length != Endpoint.values().length) {
+            throw new IllegalArgumentException("Смесь запросов должна содержать "
+                    + Endpoint.values().length + " значения.");
+        }
+        String scenario = values.getOrDefault("scenario", "mix");
+        if (!scenario.equals("mix") && !scenario.equals("oversubscription")
+                && !scenario.equals("reservation")) {
+            throw new IllegalArgumentException("Неизвестный сценарий: " + scenario);
+        }
+        int[] mix = new int[mixValues.length];
+        for (int i = 0; i < mixValues.length; i++) {
+            mix[i] = Integer.parseInt(mixValues[i].trim());
+        }
+        return new LoadTestConfig(
+                values.getOrDefault("ewm", "http://localhost:8080"),
+                values.getOrDefault("stats", "http://localhost:9090"),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                Integer.parseInt(values.getOrDefault("events", "200")),
+                Integer.parseInt(values.getOrDefault("comments", "200")),
+                Integer.parseInt(values.getOrDefault("vus", "32")),
+                Integer.parseInt(values.getOrDefault("warmup", "10")),
+                Integer.parseInt(values.getOrDefault("duration", "60")),
+                mix,
+                values.getOrDefault("label", "run"),
+                values.getOrDefault("report", "load-test-report.csv"),
+                scenario,
+                Integer.parseInt(values.getOrDefault("limit", "10")),
+                Integer.parseInt(values.getOrDefault("concurrent", "200")),
+                values.getOrDefault("db", "jdbc:postgresql://localhost:5434/ewmdb"),
+                values.getOrDefault("db-user", "ewmdb"),
+                values.getOrDefault("db-password", "ewmdb"),
+                Integer.parseInt(values.getOrDefault("requesters", "200000")));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Проверка отсутствия превышения лимита участников при одновременных заявках.
+ * На событие без модерации одновременно отправляется concurrent заявок, на событие с модерацией
+ * инициатор одновременно подтверждает concurrent заявок, по одной в запросе. После каждой фазы
+ * счетчик confirmedRequests события и количество заявок в статусе CONFIRMED должны быть равны лимиту.
+ */
+public class OversubscriptionScenario {
+    private final ApiClient client;
+    private final LoadTestConfig config;
+    private final Seeder seeder;
+
+    public OversubscriptionScenario(ApiClient client, LoadTestConfig config) {
+        if (config.concurrent() <= config.limit()) {
+            throw new IllegalArgumentException("Количество заявок должно превышать лимит участников.");
+        }
+        this.client = client;
+        this.config = config;
+        this.seeder = new Seeder(client, config);
+    }
+
+    /**
+     * @return - true, если лимит участников не превышен ни в одной фазе
+     */
+    public boolean run() throws InterruptedException {
+        System.out.printf("Лимит участников %d, одновременных заявок %d.%n", config.limit(), config.concurrent());
+        Integer initiatorId = seeder.createUser();
+        Integer categoryId = seeder.createCategory(0);
+        List<Integer> requesterIds = new ArrayList<>();
+        for (int i = 0; i < config.concurrent(); i++) {
+            requesterIds.add(seeder.createUser());
+        }
+
+        // заявки на событие без модерации подтверждаются при создании
+        Integer eventId = seeder.createPublishedEvent(0, initiatorId, categoryId, config.limit(), false);
+        int[] statuses = concurrently(i -> client.post(config.ewmUrl() + "/users/" + requesterIds.get(i)
+                + "/requests?eventId=" + eventId, null).status());
+        boolean created = verify("Создание заявок", initiatorId, eventId, statuses);
+
+        Integer moderatedEventId = seeder.createPublishedEvent(1, initiatorId, categoryId, config.limit(), true);
+        List<Integer> requestIds = new ArrayList<>();
+        for (Integer requesterId : requesterIds) {
+            ApiClient.Response response = Seeder.check(client.post(config.ewmUrl() + "/users/" + requesterId
+                    + "/requests?eventId=" + moderatedEventId, null), "создание заявки");
+            requestIds.add(client.readTree(response).get("id").asInt());
+        }
+        String moderationUrl = config.ewmUrl() + "/users/" + initiatorId + "/events/" + moderatedEventId
+                + "/requests";
+        statuses = concurrently(i -> client.patch(moderationUrl,
+                Map.of("requestIds", List.of(requestIds.get(i)), "status", "CONFIRMED")).status());
+        boolean confirmed = verify("Подтверждение заявок", initiatorId, moderatedEventId, statuses);
+        return created && confirmed;
+    }
+
+    /**
+     * Одновременное выполнение concurrent запросов, запросы ждут общего старта
+     *
+     * @param call - запрос по номеру, возвращающий код ответа
+     * @return - коды ответов
+     */
+    private int[] concurrently(IntUnaryOperator call) throws InterruptedException {
+        int[] statuses = new int[config.concurrent()];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            int number = i;
+            threads.add(Thread.ofVirtual().name("oversubscription-" + i).start(() -> {
+                try {
+                    start.await();
+                    statuses[number] = call.applyAsInt(number);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    statuses[number] = -1;
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%d запросов выполнено за %d мс.%n", statuses.length,
+                (System.nanoTime() - started) / 1_000_000);
+        return statuses;
+    }
+
+    private boolean verify(String phase, Integer initiatorId, Integer eventId, int[] statuses) {
+        String eventUrl = config.ewmUrl() + "/users/" + initiatorId + "/events/" + eventId;
+        int confirmedRequests = client.readTree(Seeder.check(client.get(eventUrl), "получение события"))
+                .get("confirmedRequests").asInt();
+        int confirmedRows = 0;
+        for (JsonNode request : client.readTree(Seeder.check(client.get(eventUrl + "/requests"),
+                "получение заявок"))) {
+            if ("CONFIRMED".equals(request.get("status").asText())) {
+                confirmedRows++;
+            }
+        }
+        int successful = 0;
+        int conflicts = 0;
+        for (int status : statuses) {
+            if (status >= 200 && status < 300) {
+                successful++;
+            } else if (status == 409) {
+                conflicts++;
+            }
+        }
+        boolean passed = confirmedRequests == config.limit() && confirmedRows == config.limit();
+        System.out.printf("%s: ответов 2xx %d, 409 %d, других %d; confirmedRequests=%d, заявок CONFIRMED %d,"
+                        + " лимит %d - %s.%n", phase, successful, conflicts, statuses.length - successful - conflicts,
+                confirmedRequests, confirmedRows, config.limit(), passed ? "лимит соблюден" : "ЛИМИТ ПРЕВЫШЕН");
+        return passed;
+    }
+}
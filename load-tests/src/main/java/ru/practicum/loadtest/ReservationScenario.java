@@ -0,0 +1,264 @@
+package ru.practicum.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Сравнение пропускной способности резервирования мест на одно популярное событие.
+ * Транзакции выполняются напрямую в базе данных основного сервиса и повторяют транзакцию
+ * создания подтвержденной заявки в трех вариантах:
+ * update - место резервируется условным UPDATE счетчика (EventRepository.reserveConfirmedRequests),
+ * затем сохраняется заявка, как в RequestServiceImpl.createRequest;
+ * update-last - заявка сохраняется до условного UPDATE, строка события блокируется только до фиксации,
+ * но ожидающие транзакции успевают сохранить заявки и конкурируют за процессор с держателем блокировки;
+ * lock - строка события блокируется SELECT ... FOR UPDATE перед проверкой лимита
+ * и остается заблокированной на время сохранения заявки, обновления счетчика и фиксации.
+ * Лимит участников события равен количеству участников, поэтому отказов по лимиту нет
+ * и измеряется только конкуренция за строку события. После каждого варианта счетчик
+ * confirmed_requests должен быть равен количеству подтвержденных заявок.
+ */
+public class ReservationScenario {
+    private static final String[] STRATEGIES = {"update", "update-last", "lock"};
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+    private static final String SQL_INSERT_USERS = "INSERT INTO users (name, email) "
+            + "SELECT 'Участник ' || ? || ' ' || g, 'member' || g || '.' || ? || '@reservation.test' "
+            + "FROM generate_series(1, ?) g RETURNING id";
+    private static final String SQL_INSERT_REQUEST = "INSERT INTO requests (requester_id, event_id, status, created) "
+            + "VALUES (?, ?, 'CONFIRMED', now())";
+    private static final String SQL_RESERVE = "UPDATE events SET confirmed_requests = confirmed_requests + 1 "
+            + "WHERE id = ? AND (participantlimit = 0 OR confirmed_requests + 1 <= participantlimit)";
+    private static final String SQL_LOCK = "SELECT participantlimit, confirmed_requests FROM events "
+            + "WHERE id = ? FOR UPDATE";
+    private static final String SQL_INCREMENT = "UPDATE events SET confirmed_requests = confirmed_requests + 1 "
+            + "WHERE id = ?";
+    private static final String SQL_VERIFY = "SELECT e.confirmed_requests, "
+            + "(SELECT COUNT(*) FROM requests r WHERE r.event_id = e.id AND r.status = 'CONFIRMED') "
+            + "FROM events e WHERE e.id = ?";
+
+    private final LoadTestConfig config;
+    private final Seeder seeder;
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReference<String> firstError = new AtomicReference<>();
+
+    public ReservationScenario(ApiClient client, LoadTestConfig config) {
+        this.config = config;
+        this.seeder = new Seeder(client, config);
+    }
+
+    /**
+     * @return - true, если во всех вариантах счетчик совпал с количеством подтвержденных заявок
+     */
+    public boolean run() throws InterruptedException, SQLException {
+        List<Integer> requesterIds = createRequesters();
+        Integer initiatorId = seeder.createUser();
+        Integer categoryId = seeder.createCategory(0);
+        System.out.printf("Участников %d, соединений %d, измерение %d с.%n",
+                requesterIds.size(), config.virtualUsers(), config.durationSec());
+        System.out.printf("%-11s %9s %9s %9s %9s %9s %9s %7s %s%n",
+                "strategy", "commits", "tps", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors", "counter");
+        boolean passed = true;
+        int number = 0;
+        for (String strategy : STRATEGIES) {
+            if (config.warmupSec() > 0) {
+                Integer eventId = seeder.createPublishedEvent(number++, initiatorId, categoryId,
+                        requesterIds.size(), false);
+                runPhase(strategy, eventId, requesterIds, config.warmupSec());
+            }
+            Integer eventId = seeder.createPublishedEvent(number++, initiatorId, categoryId,
+                    requesterIds.size(), false);
+            LatencyRecorder recorder = runPhase(strategy, eventId, requesterIds, config.durationSec());
+            passed &= report(strategy, eventId, recorder);
+        }
+        return passed;
+    }
+
+    /**
+     * Участники создаются одним запросом к базе данных: на каждую транзакцию нужен новый участник,
+     * повторная заявка того же пользователя нарушила бы уникальность (requester_id, event_id)
+     */
+    private List<Integer> createRequesters() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(SQL_INSERT_USERS)) {
+            statement.setString(1, run);
+            statement.setString(2, run);
+            statement.setInt(3, config.requesters());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Выполнение транзакций резервирования всеми соединениями в течение заданного времени
+     */
+    private LatencyRecorder runPhase(String strategy, Integer eventId, List<Integer> requesterIds, int seconds)
+            throws InterruptedException, SQLException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean exhausted = new AtomicBoolean();
+        List<Connection> connections = new ArrayList<>();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            // соединения открываются заранее, чтобы время подключения не попало в измерение
+            for (int i = 0; i < config.virtualUsers(); i++) {
+                Connection connection = connect();
+                connection.setAutoCommit(false);
+                connections.add(connection);
+            }
+            for (int i = 0; i < connections.size(); i++) {
+                Connection connection = connections.get(i);
+                LatencyRecorder recorder = new LatencyRecorder();
+                recorders.add(recorder);
+                threads.add(Thread.ofPlatform().name("reservation-" + strategy + "-" + i).start(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int index = next.getAndIncrement();
+                        if (index >= requesterIds.size()) {
+                            exhausted.set(true);
+                            return;
+                        }
+                        long started = System.nanoTime();
+                        int status = reserve(connection, strategy, eventId, requesterIds.get(index));
+                        recorder.record(System.nanoTime() - started, status);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        if (firstError.get() != null) {
+            System.out.printf("Ошибка в варианте %s: %s%n", strategy, firstError.getAndSet(null));
+        }
+        if (exhausted.get()) {
+            System.out.printf("Участники закончились до окончания измерения варианта %s,"
+                    + " увеличьте --requesters.%n", strategy);
+        }
+        LatencyRecorder merged = new LatencyRecorder();
+        recorders.forEach(merged::merge);
+        return merged;
+    }
+
+    /**
+     * Одна транзакция создания подтвержденной заявки
+     *
+     * @return - 200, если место зарезервировано, 409 при отказе по лимиту, -1 при ошибке
+     */
+    private int reserve(Connection connection, String strategy, Integer eventId, Integer requesterId) {
+        try {
+            boolean reserved = switch (strategy) {
+                case "update" -> reserveByUpdate(connection, eventId, requesterId);
+                case "update-last" -> reserveByUpdateLast(connection, eventId, requesterId);
+                default -> reserveByLock(connection, eventId, requesterId);
+            };
+            if (reserved) {
+                connection.commit();
+                return 200;
+            }
+            connection.rollback();
+            return 409;
+        } catch (SQLException e) {
+            firstError.compareAndSet(null, e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // соединение будет закрыто после завершения варианта
+            }
+            return -1;
+        }
+    }
+
+    private static boolean reserveByUpdate(Connection connection, Integer eventId, Integer requesterId)
+            throws SQLException {
+        if (!updateCounter(connection, eventId)) {
+            return false;
+        }
+        insertRequest(connection, eventId, requesterId);
+        return true;
+    }
+
+    private static boolean reserveByUpdateLast(Connection connection, Integer eventId, Integer requesterId)
+            throws SQLException {
+        insertRequest(connection, eventId, requesterId);
+        return updateCounter(connection, eventId);
+    }
+
+    private static boolean updateCounter(Connection connection, Integer eventId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_RESERVE)) {
+            statement.setInt(1, eventId);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    private static boolean reserveByLock(Connection connection, Integer eventId, Integer requesterId)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_LOCK)) {
+            statement.setInt(1, eventId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                int participantLimit = resultSet.getInt(1);
+                if (participantLimit != 0 && resultSet.getInt(2) >= participantLimit) {
+                    return false;
+                }
+            }
+        }
+        insertRequest(connection, eventId, requesterId);
+        try (PreparedStatement statement = connection.prepareStatement(SQL_INCREMENT)) {
+            statement.setInt(1, eventId);
+            statement.executeUpdate();
+        }
+        return true;
+    }
+
+    private static void insertRequest(Connection connection, Integer eventId, Integer requesterId)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_INSERT_REQUEST)) {
+            statement.setInt(1, requesterId);
+            statement.setInt(2, eventId);
+            statement.executeUpdate();
+        }
+    }
+
+    private boolean report(String strategy, Integer eventId, LatencyRecorder recorder) throws SQLException {
+        int confirmedRequests;
+        int confirmedRows;
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(SQL_VERIFY)) {
+            statement.setInt(1, eventId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                confirmedRequests = resultSet.getInt(1);
+                confirmedRows = resultSet.getInt(2);
+            }
+        }
+        boolean passed = confirmedRequests == confirmedRows && confirmedRows == recorder.getSuccessCount();
+        double[] p = recorder.successPercentilesMs(PERCENTILES);
+        System.out.printf(Locale.ROOT, "%-11s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %s%n",
+                strategy, recorder.getSuccessCount(), (double) recorder.getSuccessCount() / config.durationSec(),
+                p[0], p[1], p[2], p[3], recorder.getServerErrors(),
+                passed ? "совпадает" : "НЕ СОВПАДАЕТ: " + confirmedRequests + " / " + confirmedRows);
+        return passed;
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(config.db(), config.dbUser(), config.dbPassword());
+    }
+}
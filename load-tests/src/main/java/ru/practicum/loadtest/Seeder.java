@@ -0,0 +1,126 @@
+package ru.practicum.loadtest;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заполнение сервиса данными через API администратора и пользователей:
+ * пользователи, категории, опубликованные события, заявки и комментарии
+ */
+public class Seeder {
+    private static final DateTimeFormatter DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int CATEGORIES = 10;
+
+    private final ApiClient client;
+    private final LoadTestConfig config;
+    // уникальный суффикс позволяет повторно заполнять одну и ту же базу данных
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicInteger extraUsers = new AtomicInteger();
+
+    /**
+     * Созданные данные
+     *
+     * @param userIds  - идентификаторы пользователей
+     * @param eventIds - идентификаторы опубликованных событий
+     */
+    public record SeedData(List<Integer> userIds, List<Integer> eventIds) {
+    }
+
+    public Seeder(ApiClient client, LoadTestConfig config) {
+        this.client = client;
+        this.config = config;
+    }
+
+    public SeedData seed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < config.users(); i++) {
+            userIds.add(createId("/admin/users", Map.of(
+                    "name", "Пользователь " + run + " " + i,
+                    "email", "user" + i + "." + run + "@load.test")));
+        }
+        List<Integer> categoryIds = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            categoryIds.add(createCategory(i));
+        }
+
+        List<Integer> eventIds = new ArrayList<>();
+        for (int i = 0; i < config.events(); i++) {
+            Integer initiatorId = userIds.get(random.nextInt(userIds.size()));
+            // часть событий с ограничением участников, чтобы заявки упирались в лимит
+            eventIds.add(createPublishedEvent(i, initiatorId, categoryIds.get(i % categoryIds.size()),
+                    i % 3 == 0 ? 10 : 0, false));
+        }
+
+        for (int i = 0; i < config.comments(); i++) {
+            Integer userId = userIds.get(random.nextInt(userIds.size()));
+            Integer eventId = eventIds.get(random.nextInt(eventIds.size()));
+            client.post(config.ewmUrl() + "/users/" + userId + "/events/" + eventId + "/comments",
+                    Map.of("text", "Комментарий " + i + " нагрузочного теста"));
+        }
+        // по одной заявке от пользователей на случайные события
+        for (Integer userId : userIds) {
+            Integer eventId = eventIds.get(random.nextInt(eventIds.size()));
+            client.post(config.ewmUrl() + "/users/" + userId + "/requests?eventId=" + eventId, null);
+        }
+        return new SeedData(userIds, eventIds);
+    }
+
+    public Integer createCategory(int number) {
+        return createId("/admin/categories", Map.of("name", "Категория " + run + " " + number));
+    }
+
+    /**
+     * Создание и публикация события
+     *
+     * @return - идентификатор опубликованного события
+     */
+    public Integer createPublishedEvent(int number,
+                                        Integer initiatorId,
+                                        Integer categoryId,
+                                        int participantLimit,
+                                        boolean requestModeration) {
+        Integer eventId = createId("/users/" + initiatorId + "/events", Map.of(
+                "annotation", "Нагрузочное тестирование, событие " + number + " запуска " + run,
+                "description", "Описание события " + number + " для нагрузочного тестирования сервиса.",
+                "category", categoryId,
+                "eventDate", LocalDateTime.now().plusDays(1 + number % 60).format(DATA_TIME_FORMATTER),
+                "location", Map.of("lat", 55.75, "lon", 37.62),
+                "paid", number % 2 == 0,
+                "participantLimit", participantLimit,
+                "requestModeration", requestModeration,
+                "title", "Событие " + number));
+        check(client.patch(config.ewmUrl() + "/admin/events/" + eventId,
+                Map.of("stateAction", "PUBLISH_EVENT")), "публикация события");
+        return eventId;
+    }
+
+    /**
+     * Создание пользователя после заполнения, например нового участника для каждой заявки
+     */
+    public Integer createUser() {
+        int number = extraUsers.incrementAndGet();
+        return createId("/admin/users", Map.of(
+                "name", "Участник " + run + " " + number,
+                "email", "member" + number + "." + run + "@load.test"));
+    }
+
+    private Integer createId(String path, Object body) {
+        ApiClient.Response response = check(client.post(config.ewmUrl() + path, body), path);
+        return client.readTree(response).get("id").asInt();
+    }
+
+    static ApiClient.Response check(ApiClient.Response response, String action) {
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("Ошибка заполнения данных (" + action + "): "
+                    + response.status() + " " + response.body());
+        }
+        return response;
+    }
+}
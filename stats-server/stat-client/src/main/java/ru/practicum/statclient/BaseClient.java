@@ -69,28 +69,37 @@ public class BaseClient {
         return prepareClientResponse(serverResponse);
     }
 
+    /**
+     * Запрос статистики посещений.
+     * Ошибки соединения и ответы с кодом ошибки передаются вызывающему коду
+     * в виде RestClientException, чтобы он мог отличить недоступность сервера
+     * от отсутствия посещений.
+     *
+     * @param path       - эндпоинт
+     * @param parameters - карта параметров, null - запрос без параметров
+     * @return - список статистики посещений
+     */
     protected List<StatsDto> getStatsList(String path,
                                           Map<String, Object> parameters) {
-        ResponseEntity<List<StatsDto>> serverResponse = null;
-        try {
-            if (parameters != null) {
-                StringBuilder stringParametrs = new StringBuilder(path);
-                stringParametrs.append("?");
-                for (String key : parameters.keySet()) {
-                    stringParametrs.append(key);
-                    stringParametrs.append("={");
-                    stringParametrs.append(key);
-                    stringParametrs.append("}&");
-                }
-                serverResponse = rest.exchange(stringParametrs.toString(), HttpMethod.GET, null,
-                        new ParameterizedTypeReference<List<StatsDto>>() {
-                        }, parameters);
+        ResponseEntity<List<StatsDto>> serverResponse;
+        if (parameters != null) {
+            StringBuilder stringParametrs = new StringBuilder(path);
+            stringParametrs.append("?");
+            for (String key : parameters.keySet()) {
+                stringParametrs.append(key);
+                stringParametrs.append("={");
+                stringParametrs.append(key);
+                stringParametrs.append("}&");
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return List.of();
+            serverResponse = rest.exchange(stringParametrs.toString(), HttpMethod.GET, null,
+                    new ParameterizedTypeReference<List<StatsDto>>() {
+                    }, parameters);
+        } else {
+            serverResponse = rest.exchange(path, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<List<StatsDto>>() {
+                    });
         }
         List<StatsDto> dtos = serverResponse.getBody();
-        return dtos;
+        return dtos == null ? List.of() : dtos;
     }
 }
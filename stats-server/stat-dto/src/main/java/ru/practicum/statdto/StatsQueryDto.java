@@ -0,0 +1,23 @@
+package ru.practicum.statdto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Запрос статистики группы эндпоинтов с общим префиксом,
+ * например просмотров событий: prefix = "/events/", ids - идентификаторы событий.
+ * Период задается в формате "yyyy-MM-dd HH:mm:ss", без периода учитываются все посещения.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class StatsQueryDto {
+    private String prefix;
+    private List<Integer> ids;
+    private Boolean unique;
+    private String start;
+    private String end;
+}
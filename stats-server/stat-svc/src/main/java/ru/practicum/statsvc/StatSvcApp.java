@@ -2,8 +2,10 @@ package ru.practicum.statsvc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StatSvcApp {
     public static void main(String[] args) {
         SpringApplication.run(StatSvcApp.class, args);
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.practicum.statdto.ErrorMessage;
 import ru.practicum.statsvc.exception.InternalServerException;
+import ru.practicum.statsvc.exception.ServiceUnavailableException;
 import ru.practicum.statsvc.exception.ValidationException;
 
 @Slf4j
@@ -27,4 +28,11 @@ public class ErrorAdvisor {
         return new ErrorMessage(e.getMessage());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorMessage onServiceUnavailableException(final ServiceUnavailableException e) {
+        log.warn("503 {}", e.getMessage());
+        return new ErrorMessage(e.getMessage());
+    }
+
 }
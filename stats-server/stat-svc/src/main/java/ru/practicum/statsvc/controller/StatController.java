@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.statdto.HitDto;
 import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
 import ru.practicum.statsvc.service.StatService;
 
 import java.util.List;
@@ -24,6 +25,13 @@ public class StatController {
         statService.addHit(dto);
     }
 
+    @PostMapping("/hit/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void hits(@RequestBody List<HitDto> dtos) {
+        log.info("Поступила информация о {} посещениях.", dtos.size());
+        statService.addHits(dtos);
+    }
+
     @GetMapping("/stats")
     @ResponseStatus(HttpStatus.OK)
     public List<StatsDto> getStats(
@@ -31,8 +39,23 @@ public class StatController {
             @RequestParam(required = false) String end,
             @RequestParam(required = false) List<String> uris,
             @RequestParam(defaultValue = "false") Boolean unique,
-            @RequestParam(defaultValue = "10") Integer size) {
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(defaultValue = "exact") String precision) {
         log.info("Запрашивается информация о посещении эндпоинта {} с {} до {}.", uris, start, end);
-        return statService.getStats(start, end, uris, unique, size);
+        return statService.getStats(start, end, uris, unique, size, precision);
+    }
+
+    /**
+     * Статистика группы эндпоинтов по идентификаторам.
+     * Ответ - массив пар [идентификатор, количество посещений] без эндпоинтов,
+     * у которых посещений нет. Список идентификаторов передается в теле запроса
+     * и не ограничен длиной url.
+     */
+    @PostMapping("/stats/query")
+    @ResponseStatus(HttpStatus.OK)
+    public List<int[]> queryStats(@RequestBody StatsQueryDto query) {
+        log.info("Запрашивается информация о посещении {} эндпоинтов {}.",
+                query.getIds() == null ? 0 : query.getIds().size(), query.getPrefix());
+        return statService.queryStats(query);
     }
 }
@@ -0,0 +1,22 @@
+package ru.practicum.statsvc.enums;
+
+import java.util.Optional;
+
+/**
+ * Точность подсчета уникальных посещений
+ */
+public enum StatPrecision {
+    // точный подсчет уникальных адресов
+    EXACT,
+    // оценка по скетчам HyperLogLog
+    APPROXIMATE;
+
+    public static Optional<StatPrecision> from(String precision) {
+        for (StatPrecision value : StatPrecision.values()) {
+            if (value.name().equalsIgnoreCase(precision)) {
+                return Optional.of(value);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.statsvc.mapper;
+
+import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.HitBucket;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+public class HitBucketMapper {
+    private HitBucketMapper() {
+    }
+
+    /**
+     * Приложение в агрегатах и сегментах: посещение без приложения хранится с пустой строкой
+     */
+    public static String toStoredApp(String app) {
+        return Objects.requireNonNullElse(app, "");
+    }
+
+    /**
+     * Приложение в статистике: пустая строка хранения возвращается как отсутствующее приложение
+     */
+    public static String fromStoredApp(String app) {
+        return app == null || app.isEmpty() ? null : app;
+    }
+
+    /**
+     * Начало часового интервала, содержащего момент времени
+     */
+    public static LocalDateTime toBucket(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * Группировка посещений по часовым интервалам.
+     * Счетчик посещений учитывает только посещения с адресом, как count(ip) по сырым данным.
+     * Интервалы упорядочены по (app, uri, bucket), чтобы параллельные
+     * транзакции блокировали строки агрегатов в одном порядке.
+     *
+     * @param hits - список посещений
+     * @return - список агрегатов
+     */
+    public static List<HitBucket> toBuckets(List<EndpointHit> hits) {
+        Map<String, HitBucket> buckets = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            String app = toStoredApp(hit.getApp());
+            LocalDateTime bucketStart = toBucket(hit.getTimestamp());
+            String key = app + '\u0000' + hit.getUri() + '\u0000' + bucketStart;
+            HitBucket bucket = buckets.computeIfAbsent(key,
+                    k -> new HitBucket(app, hit.getUri(), bucketStart, 0, new HashSet<>()));
+            if (hit.getIp() != null) {
+                bucket.setHits(bucket.getHits() + 1);
+                bucket.getIps().add(hit.getIp());
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+}
@@ -10,7 +10,7 @@ public class ViewStatsRowMapper implements RowMapper<ViewStats> {
     @Override
     public ViewStats mapRow(ResultSet resultSet, int rowNum) throws SQLException {
         ViewStats viewStats = new ViewStats();
-        viewStats.setApp(resultSet.getString("app"));
+        viewStats.setApp(HitBucketMapper.fromStoredApp(resultSet.getString("app")));
         viewStats.setUri(resultSet.getString("uri"));
         viewStats.setHits(resultSet.getInt("hits"));
         return viewStats;
@@ -0,0 +1,25 @@
+package ru.practicum.statsvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Агрегированные посещения эндпоинта за один час
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HitBucket {
+    private String app;
+    private String uri;
+    private LocalDateTime bucket;
+    private long hits;
+    private Set<String> ips = new HashSet<>();
+}
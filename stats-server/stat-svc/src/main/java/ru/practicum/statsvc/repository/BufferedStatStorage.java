@@ -0,0 +1,515 @@
+package ru.practicum.statsvc.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import ru.practicum.statsvc.exception.ServiceUnavailableException;
+import ru.practicum.statsvc.exception.ValidationException;
+import ru.practicum.statsvc.mapper.HitBucketMapper;
+import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.HitBucket;
+import ru.practicum.statsvc.model.ViewStats;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Буфер посещений перед хранилищем в базе данных.
+ * Посещения записываются в журнал предзаписи и накапливаются в памяти
+ * по часовым интервалам (app, uri, bucket), раз в stats.buffer.flush-interval-ms
+ * буфер сохраняется в базу данных одной транзакцией. Статистика считается
+ * по базе данных вместе с еще не сохраненными посещениями.
+ * Номер последнего сохраненного сегмента журнала фиксируется в той же транзакции,
+ * поэтому при запуске из журнала восстанавливаются только несохраненные посещения,
+ * а после ошибки фиксации по нему проверяется, сохранен ли буфер на самом деле.
+ * Ни прием посещений, ни чтение статистики не ждут запросов к базе данных:
+ * блокировка берется только на подмену буфера и публикацию результата сохранения.
+ * Пока база данных недоступна, буфер растет до stats.buffer.max-pending посещений,
+ * после чего новые посещения отклоняются с кодом 503.
+ * Буфер используется только с хранилищем в базе данных (stats.storage=db).
+ */
+@Slf4j
+@Primary
+@Repository
+@ConditionalOnExpression("'${stats.storage:db}' == 'db' && ${stats.buffer.enabled:true}")
+public class BufferedStatStorage implements StatStorage, MeterBinder {
+    private static final String SQL_SELECT_CHECKPOINT = """
+            SELECT segment FROM hit_wal_checkpoint WHERE wal_dir = :walDir
+            """;
+    private static final String SQL_UPSERT_CHECKPOINT = """
+            INSERT INTO hit_wal_checkpoint (wal_dir, segment) VALUES (:walDir, :segment)
+            ON CONFLICT (wal_dir) DO UPDATE SET segment = EXCLUDED.segment
+            """;
+    // размер полей таблицы endpointhits
+    private static final int MAX_FIELD_LENGTH = 128;
+    // попытки получить согласованный снимок базы данных и буфера, пока фиксируется сохранение буфера
+    private static final int MAX_READ_ATTEMPTS = 50;
+
+    private final StatDbStorage storage;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
+    private final HitWriteAheadLog wal;
+    private final String walDir;
+    private final long maxPending;
+
+    // прием посещений и снимок буфера для чтения статистики выполняются под разделяемой блокировкой,
+    // подмена буфера и публикация результата сохранения - под исключительной
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // номер сохранения буфера, увеличивается при публикации сохраненного буфера
+    private volatile long generation;
+    // транзакция сохранения буфера фиксируется или ее результат неизвестен:
+    // сохраняемые посещения могут уже быть видны в базе данных
+    private volatile boolean committing;
+    private volatile Map<BucketKey, PendingBucket> current = new ConcurrentHashMap<>();
+    // буфер, сохраняемый в базу данных, учитывается в статистике до фиксации транзакции
+    private volatile Map<BucketKey, PendingBucket> flushing;
+    private long flushingSegment;
+
+    private final LongAdder pending = new LongAdder();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong readRetries = new AtomicLong();
+
+    public BufferedStatStorage(StatDbStorage storage,
+                               NamedParameterJdbcTemplate jdbc,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${stats.buffer.wal.dir:stat-wal}") String walDir,
+                               @Value("${stats.buffer.wal.fsync:false}") boolean fsync,
+                               @Value("${stats.buffer.max-pending:1000000}") long maxPending) {
+        this.storage = storage;
+        this.maxPending = maxPending;
+        this.jdbc = jdbc;
+        this.transactionManager = transactionManager;
+        Path dir = Path.of(walDir).toAbsolutePath().normalize();
+        this.walDir = dir.toString();
+        this.wal = new HitWriteAheadLog(dir, fsync);
+    }
+
+    private static DefaultTransactionDefinition readDefinition() {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        definition.setReadOnly(true);
+        return definition;
+    }
+
+    /**
+     * Восстановление несохраненных посещений из журнала
+     */
+    @PostConstruct
+    public void init() {
+        long checkpoint = jdbc.queryForList(SQL_SELECT_CHECKPOINT, checkpointParameters(), Long.class).stream()
+                .findFirst()
+                .orElse(0L);
+        long last = checkpoint;
+        int replayed = 0;
+        for (Long segment : wal.segments()) {
+            if (segment > checkpoint) {
+                replayed += wal.replay(segment, hit -> addToBuffer(current, hit));
+                last = segment;
+            }
+        }
+        wal.deleteUpTo(checkpoint);
+        wal.open(last + 1);
+        pending.add(replayed);
+        if (replayed > 0) {
+            log.info("Из журнала {} восстановлено {} несохраненных посещений.", walDir, replayed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (flushing != null) {
+            log.warn("Не удалось сохранить {} посещений при остановке, они будут восстановлены из журнала.",
+                    pending.sum());
+        }
+        wal.close();
+    }
+
+    @Override
+    public void addHit(EndpointHit hit) {
+        addHits(List.of(hit));
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> hits) {
+        hits.forEach(BufferedStatStorage::validate);
+        if (pending.sum() + hits.size() > maxPending) {
+            rejected.addAndGet(hits.size());
+            throw new ServiceUnavailableException("Буфер посещений заполнен, база данных статистики недоступна.");
+        }
+        lock.readLock().lock();
+        try {
+            wal.append(hits);
+            Map<BucketKey, PendingBucket> buffer = current;
+            for (EndpointHit hit : hits) {
+                addToBuffer(buffer, hit);
+            }
+            pending.add(hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ViewStats> getViewStats(LocalDateTime start,
+                                        LocalDateTime end,
+                                        List<String> uris,
+                                        Boolean unique,
+                                        Integer size) {
+        return readStats(start, end, uris,
+                buckets -> storage.getViewStats(start, end, uris, unique, size, buckets));
+    }
+
+    @Override
+    public List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         List<String> uris,
+                                                         Integer size) {
+        return readStats(start, end, uris,
+                buckets -> storage.getApproximateUniqueViewStats(start, end, uris, size, buckets));
+    }
+
+    /**
+     * Статистика по базе данных и снимку несохраненных посещений.
+     * Запрос выполняется в транзакции REPEATABLE READ, снимок базы данных фиксируется первым
+     * ее запросом. Затем под блокировкой берется снимок буфера: если с момента до снимка базы данных
+     * буфер не сохранялся и не фиксируется сейчас, сохраняемые посещения не видны в базе данных
+     * и учитываются только по снимку буфера. Иначе снимки берутся заново.
+     * Сам запрос статистики выполняется без блокировки.
+     */
+    private List<ViewStats> readStats(LocalDateTime start,
+                                      LocalDateTime end,
+                                      List<String> uris,
+                                      Function<List<HitBucket>, List<ViewStats>> query) {
+        for (int attempt = 1; attempt <= MAX_READ_ATTEMPTS; attempt++) {
+            long observed = generation;
+            TransactionStatus status = transactionManager.getTransaction(readDefinition());
+            try {
+                jdbc.getJdbcOperations().queryForObject("SELECT 1", Integer.class);
+                List<HitBucket> buckets = null;
+                lock.readLock().lock();
+                try {
+                    if (!committing && generation == observed) {
+                        buckets = pendingBuckets(start, end, uris);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (buckets != null) {
+                    List<ViewStats> stats = query.apply(buckets);
+                    transactionManager.commit(status);
+                    return stats;
+                }
+                transactionManager.rollback(status);
+            } catch (RuntimeException e) {
+                if (!status.isCompleted()) {
+                    transactionManager.rollback(status);
+                }
+                throw e;
+            }
+            readRetries.incrementAndGet();
+            pause(attempt);
+        }
+        throw new ServiceUnavailableException("Не удалось получить согласованную статистику, "
+                + "буфер посещений сохраняется в базу данных.");
+    }
+
+    private static void pause(int attempt) {
+        try {
+            Thread.sleep(Math.min(attempt, 20));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Чтение статистики прервано.");
+        }
+    }
+
+    /**
+     * Сохранение буфера в базу данных.
+     * Буфер, который не удалось сохранить, сохраняется повторно при следующем вызове,
+     * новые посещения тем временем накапливаются в следующем буфере.
+     * Если ошибкой завершилась фиксация транзакции, перед повтором по hit_wal_checkpoint
+     * проверяется, не сохранен ли буфер, чтобы не сохранить посещения дважды.
+     */
+    @Scheduled(initialDelayString = "${stats.buffer.flush-interval-ms:1000}",
+            fixedDelayString = "${stats.buffer.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (flushing != null && committing) {
+            resolveCommit();
+            if (flushing == null || committing) {
+                return;
+            }
+        }
+        if (flushing == null) {
+            lock.writeLock().lock();
+            try {
+                if (current.isEmpty()) {
+                    return;
+                }
+                flushing = current;
+                current = new ConcurrentHashMap<>();
+                flushingSegment = wal.rotate();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<EndpointHit> hits = flushingHits();
+        TransactionStatus status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        try {
+            storage.addHits(hits);
+            jdbc.update(SQL_UPSERT_CHECKPOINT, checkpointParameters().addValue("segment", flushingSegment));
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            flushFailures.incrementAndGet();
+            log.warn("Не удалось сохранить {} посещений из буфера. {}", hits.size(), e.getMessage());
+            return;
+        }
+        // читатели не берут снимок буфера, пока результат фиксации не опубликован
+        lock.writeLock().lock();
+        try {
+            committing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            transactionManager.commit(status);
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.warn("Ошибка фиксации сохранения {} посещений из буфера. {}", hits.size(), e.getMessage());
+            resolveCommit();
+            return;
+        }
+        publishFlushed(hits.size());
+    }
+
+    /**
+     * Проверка результата фиксации, завершившейся ошибкой: фиксация могла пройти,
+     * тогда hit_wal_checkpoint уже содержит сегмент сохраняемого буфера.
+     * Если база данных недоступна, результат остается неизвестным до следующей проверки.
+     */
+    private void resolveCommit() {
+        Long saved;
+        try {
+            saved = jdbc.queryForList(SQL_SELECT_CHECKPOINT, checkpointParameters(), Long.class).stream()
+                    .findFirst()
+                    .orElse(0L);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось проверить результат сохранения буфера. {}", e.getMessage());
+            return;
+        }
+        if (saved >= flushingSegment) {
+            log.info("Буфер посещений сохранен, несмотря на ошибку фиксации.");
+            publishFlushed(flushingHits().size());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            committing = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Исключение сохраненного буфера из статистики
+     */
+    private void publishFlushed(int count) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            flushing = null;
+            committing = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pending.add(-count);
+        flushed.addAndGet(count);
+        wal.deleteUpTo(flushingSegment);
+    }
+
+    private List<EndpointHit> flushingHits() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (PendingBucket bucket : flushing.values()) {
+            hits.addAll(bucket.raw);
+        }
+        return hits;
+    }
+
+    /**
+     * Несохраненные посещения, попадающие в период и список эндпоинтов запроса.
+     * Часовые интервалы, целиком входящие в период, берутся из счетчиков,
+     * интервалы на границах периода досчитываются по самим посещениям.
+     */
+    private List<HitBucket> pendingBuckets(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Set<String> uriFilter = StatDbStorage.isUriFilter(uris) ? new HashSet<>(uris) : null;
+        List<HitBucket> result = new ArrayList<>();
+        collectPending(current, start, end, uriFilter, result);
+        Map<BucketKey, PendingBucket> beingFlushed = flushing;
+        if (beingFlushed != null) {
+            collectPending(beingFlushed, start, end, uriFilter, result);
+        }
+        return result;
+    }
+
+    private static void collectPending(Map<BucketKey, PendingBucket> buffer,
+                                       LocalDateTime start,
+                                       LocalDateTime end,
+                                       Set<String> uriFilter,
+                                       List<HitBucket> result) {
+        for (Map.Entry<BucketKey, PendingBucket> entry : buffer.entrySet()) {
+            BucketKey key = entry.getKey();
+            if (uriFilter != null && !uriFilter.contains(key.uri())) {
+                continue;
+            }
+            LocalDateTime bucketEnd = key.bucket().plusHours(1);
+            if ((start != null && !bucketEnd.isAfter(start)) || (end != null && !key.bucket().isBefore(end))) {
+                continue;
+            }
+            PendingBucket bucket = entry.getValue();
+            boolean whole = (start == null || !key.bucket().isBefore(start))
+                    && (end == null || !bucketEnd.isAfter(end));
+            if (whole) {
+                result.add(new HitBucket(key.app(), key.uri(), key.bucket(), bucket.hits.sum(),
+                        new HashSet<>(bucket.ips)));
+                continue;
+            }
+            boolean matched = false;
+            long hits = 0;
+            Set<String> ips = new HashSet<>();
+            for (EndpointHit hit : bucket.raw) {
+                if ((start == null || !hit.getTimestamp().isBefore(start))
+                        && (end == null || hit.getTimestamp().isBefore(end))) {
+                    matched = true;
+                    if (hit.getIp() != null) {
+                        hits++;
+                        ips.add(hit.getIp());
+                    }
+                }
+            }
+            if (matched) {
+                result.add(new HitBucket(key.app(), key.uri(), key.bucket(), hits, ips));
+            }
+        }
+    }
+
+    private static void addToBuffer(Map<BucketKey, PendingBucket> buffer, EndpointHit hit) {
+        BucketKey key = new BucketKey(HitBucketMapper.toStoredApp(hit.getApp()), hit.getUri(),
+                HitBucketMapper.toBucket(hit.getTimestamp()));
+        PendingBucket bucket = buffer.get(key);
+        if (bucket == null) {
+            bucket = buffer.computeIfAbsent(key, k -> new PendingBucket());
+        }
+        bucket.add(hit);
+    }
+
+    /**
+     * Проверка посещения до записи в журнал: посещение, которое нельзя сохранить
+     * в базу данных, не должно попасть в буфер и помешать сохранению остальных
+     */
+    private static void validate(EndpointHit hit) {
+        if (hit.getUri() == null || hit.getTimestamp() == null) {
+            throw new ValidationException("Не задан эндпоинт или время посещения.");
+        }
+        if (length(hit.getApp()) > MAX_FIELD_LENGTH || length(hit.getUri()) > MAX_FIELD_LENGTH
+                || length(hit.getIp()) > MAX_FIELD_LENGTH) {
+            throw new ValidationException("Длина app, uri и ip не должна превышать " + MAX_FIELD_LENGTH + " символов.");
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private MapSqlParameterSource checkpointParameters() {
+        return new MapSqlParameterSource("walDir", walDir);
+    }
+
+    public long getPendingCount() {
+        return pending.sum();
+    }
+
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    public long getFlushFailureCount() {
+        return flushFailures.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getReadRetryCount() {
+        return readRetries.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stats.buffer.pending", this, BufferedStatStorage::getPendingCount)
+                .description("Посещения в буфере, еще не сохраненные в базу данных")
+                .register(registry);
+        FunctionCounter.builder("stats.buffer.flushed", this, BufferedStatStorage::getFlushedCount)
+                .description("Посещения, сохраненные из буфера в базу данных")
+                .register(registry);
+        FunctionCounter.builder("stats.buffer.flush.failures", this, BufferedStatStorage::getFlushFailureCount)
+                .description("Неудачные попытки сохранения буфера")
+                .register(registry);
+        FunctionCounter.builder("stats.buffer.rejected", this, BufferedStatStorage::getRejectedCount)
+                .description("Посещения, отклоненные при заполненном буфере")
+                .register(registry);
+        FunctionCounter.builder("stats.buffer.read.retries", this, BufferedStatStorage::getReadRetryCount)
+                .description("Повторы чтения статистики из-за сохранения буфера во время запроса")
+                .register(registry);
+    }
+
+    private record BucketKey(String app, String uri, LocalDateTime bucket) {
+    }
+
+    /**
+     * Посещения одного часового интервала: счетчик, уникальные адреса
+     * и сами посещения для сохранения в базу данных
+     */
+    private static class PendingBucket {
+        private final LongAdder hits = new LongAdder();
+        private final Set<String> ips = ConcurrentHashMap.newKeySet();
+        private final Queue<EndpointHit> raw = new ConcurrentLinkedQueue<>();
+
+        void add(EndpointHit hit) {
+            raw.add(hit);
+            if (hit.getIp() != null) {
+                hits.increment();
+                ips.add(hit.getIp());
+            }
+        }
+    }
+}
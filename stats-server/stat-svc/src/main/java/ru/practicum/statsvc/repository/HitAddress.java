@@ -0,0 +1,111 @@
+package ru.practicum.statsvc.repository;
+
+import ru.practicum.statsvc.exception.InternalServerException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * Адрес посещения в записи файлового хранилища: вид значения и 16 байт.
+ * IPv4 хранится как IPv4-отображенный адрес IPv6. Строка, которая не является
+ * адресом, хранится первыми 16 байтами SHA-256: адреса нужны хранилищу только
+ * для подсчета уникальных посещений и в статистику не возвращаются.
+ */
+public record HitAddress(byte kind, long high, long low) {
+    public static final byte NONE = 0;
+    public static final byte ADDRESS = 1;
+    public static final byte DIGEST = 2;
+    public static final HitAddress EMPTY = new HitAddress(NONE, 0, 0);
+    public static final int SIZE = 1 + 2 * Long.BYTES;
+
+    // старшие байты IPv4-отображенного адреса ::ffff:a.b.c.d
+    private static final long IPV4_MAPPED = 0xFFFFL << 32;
+    private static final Pattern IPV6 = Pattern.compile("(?=.*:)[0-9a-fA-F:][0-9a-fA-F:.]*");
+
+    public static HitAddress of(String ip) {
+        if (ip == null) {
+            return EMPTY;
+        }
+        long ipv4 = parseIpv4(ip);
+        if (ipv4 >= 0) {
+            return new HitAddress(ADDRESS, 0, IPV4_MAPPED | ipv4);
+        }
+        byte kind = ADDRESS;
+        byte[] bytes = parse(ip);
+        if (bytes == null) {
+            kind = DIGEST;
+            bytes = digest(ip);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new HitAddress(kind, buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Разбор адреса IPv4 вида a.b.c.d
+     *
+     * @return - адрес или -1, если строка не является адресом IPv4
+     */
+    private static long parseIpv4(String ip) {
+        long address = 0;
+        int octets = 0;
+        int i = 0;
+        while (i < ip.length() && octets < 4) {
+            int start = i;
+            int octet = 0;
+            while (i < ip.length() && i - start < 3 && Character.isDigit(ip.charAt(i))) {
+                octet = octet * 10 + (ip.charAt(i) - '0');
+                i++;
+            }
+            if (i == start || octet > 255 || (i - start > 1 && ip.charAt(start) == '0')) {
+                return -1;
+            }
+            address = (address << 8) | octet;
+            octets++;
+            if (octets < 4) {
+                if (i == ip.length() || ip.charAt(i) != '.') {
+                    return -1;
+                }
+                i++;
+            }
+        }
+        return octets == 4 && i == ip.length() ? address : -1;
+    }
+
+    /**
+     * Разбор адреса IPv6 без обращения к DNS: InetAddress.getByName вызывается
+     * только для строк, которые по виду являются адресом IPv6
+     *
+     * @return - 16 байт адреса или null, если строка не является адресом
+     */
+    private static byte[] parse(String ip) {
+        if (!IPV6.matcher(ip).matches()) {
+            return null;
+        }
+        try {
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            if (address.length == 16) {
+                return address;
+            }
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xFF;
+            mapped[11] = (byte) 0xFF;
+            System.arraycopy(address, 0, mapped, 12, address.length);
+            return mapped;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] digest(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalServerException("Алгоритм SHA-256 недоступен. " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.practicum.statsvc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statsvc.exception.InternalServerException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь строк app и uri файлового хранилища посещений.
+ * Записи посещений ссылаются на строки по номеру, новые строки дописываются
+ * в конец файла словаря (длина, байты UTF-8). Добавление выполняет один поток записи,
+ * чтение номеров и строк доступно параллельно.
+ */
+@Slf4j
+public class HitDictionary {
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[1024];
+    private int size;
+
+    private HitDictionary(FileChannel channel) {
+        this.channel = channel;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Загрузка словаря из файла потоком, без чтения файла целиком в память.
+     * Строка, оборванная при аварийном завершении, отбрасывается.
+     */
+    public static HitDictionary open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            HitDictionary dictionary = new HitDictionary(channel);
+            long length = channel.size();
+            long position = 0;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            try {
+                while (position + Integer.BYTES <= length) {
+                    int valueLength = in.readInt();
+                    if (valueLength < 0 || position + Integer.BYTES + valueLength > length) {
+                        break;
+                    }
+                    byte[] bytes = new byte[valueLength];
+                    in.readFully(bytes);
+                    dictionary.put(new String(bytes, StandardCharsets.UTF_8));
+                    position += Integer.BYTES + valueLength;
+                }
+            } catch (EOFException e) {
+                // файл короче размера, прочитанного при открытии: остаток отбрасывается
+            }
+            if (position < length) {
+                log.warn("Отброшена оборванная запись словаря {}.", file);
+                channel.truncate(position);
+            }
+            channel.position(position);
+            return dictionary;
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка чтения словаря посещений " + file + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Номер строки, новая строка добавляется в словарь
+     */
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка записи словаря посещений. " + e.getMessage());
+        }
+        return put(value);
+    }
+
+    /**
+     * Номер строки без добавления в словарь
+     *
+     * @return - номер строки или -1, если строки нет в словаре
+     */
+    public int find(String value) {
+        return ids.getOrDefault(value, -1);
+    }
+
+    public String valueOf(int id) {
+        return values[id];
+    }
+
+    /**
+     * Запись добавленных строк в файл. Выполняется до записи посещений,
+     * которые на них ссылаются.
+     */
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка записи словаря посещений. " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        try {
+            out.flush();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия словаря посещений. {}", e.getMessage());
+        }
+    }
+
+    private int put(String value) {
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        ids.put(value, size);
+        return size++;
+    }
+}
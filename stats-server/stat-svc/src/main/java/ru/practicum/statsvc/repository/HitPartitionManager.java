@@ -0,0 +1,216 @@
+package ru.practicum.statsvc.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Управление помесячными секциями таблицы посещений endpointhits.
+ * Секции создаются заранее на stats.partitions.months-ahead месяцев вперед,
+ * посещения вне существующих секций попадают в секцию по умолчанию.
+ * При заданном stats.retention.months секции старше срока хранения отсоединяются
+ * и удаляются: посещения за этот период остаются в почасовых агрегатах.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "db", matchIfMissing = true)
+public class HitPartitionManager {
+    private static final String PARTITION_PREFIX = "endpointhits_p";
+    private static final String DEFAULT_PARTITION = "endpointhits_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{6})");
+    private static final String LEGACY_TABLE = "endpointhits_legacy";
+
+    // определение таблицы совпадает с schema.sql
+    private static final String SQL_CREATE_PARTITIONED_TABLE = """
+            CREATE TABLE endpointhits
+            (
+                id        INTEGER DEFAULT nextval('endpointhits_seq') NOT NULL,
+                app       VARCHAR(128),
+                uri       VARCHAR(128),
+                ip        VARCHAR(128),
+                timestamp TIMESTAMP WITHOUT TIME ZONE                NOT NULL,
+                CONSTRAINT pk_endpointhits PRIMARY KEY (id, timestamp)
+            ) PARTITION BY RANGE (timestamp)
+            """;
+    private static final String SQL_SELECT_TABLE_KIND = """
+            SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass('endpointhits')
+            """;
+    private static final String SQL_MIGRATE_MONTH = """
+            INSERT INTO endpointhits (id, app, uri, ip, timestamp)
+            SELECT id, app, uri, ip, timestamp FROM endpointhits_legacy
+            WHERE timestamp >= :from AND timestamp < :to
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String SQL_SELECT_PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = to_regclass('endpointhits')
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public HitPartitionManager(NamedParameterJdbcTemplate jdbc,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${stats.partitions.months-ahead:2}") int monthsAhead,
+                               @Value("${stats.retention.months:0}") int retentionMonths) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = transactionTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @PostConstruct
+    public void init() {
+        if ("r".equals(getTableKind())) {
+            transactionTemplate.executeWithoutResult(status -> replaceLegacyTable());
+        }
+        if (tableExists(LEGACY_TABLE)) {
+            migrateLegacyTable();
+        }
+        execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF endpointhits DEFAULT");
+        maintain();
+    }
+
+    /**
+     * Создание секций на ближайшие месяцы и удаление секций старше срока хранения
+     */
+    @Scheduled(initialDelayString = "${stats.partitions.maintenance-interval-ms:3600000}",
+            fixedDelayString = "${stats.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+        if (retentionMonths > 0) {
+            dropPartitionsBefore(current.minusMonths(retentionMonths));
+        }
+    }
+
+    /**
+     * Создание секции вне транзакции: ошибка создания одной секции
+     * не мешает созданию остальных
+     */
+    private void createPartition(YearMonth month) {
+        try {
+            execute(createPartitionSql(month));
+        } catch (DataAccessException e) {
+            // секцию нельзя создать, если в секции по умолчанию уже есть посещения этого месяца
+            log.warn("Не удалось создать секцию посещений за {}. {}", month, e.getMessage());
+        }
+    }
+
+    private static String createPartitionSql(YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + month.format(PARTITION_SUFFIX)
+                + " PARTITION OF endpointhits FOR VALUES FROM ('" + month.atDay(1)
+                + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    private void dropPartitionsBefore(YearMonth cutoff) {
+        List<String> partitions = jdbc.queryForList(SQL_SELECT_PARTITIONS, Map.of(), String.class);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (month.isBefore(cutoff)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    execute("ALTER TABLE endpointhits DETACH PARTITION " + partition);
+                    execute("DROP TABLE " + partition);
+                });
+                log.info("Удалена секция посещений {} старше срока хранения.", partition);
+            }
+        }
+        int deleted = jdbc.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp < :cutoff",
+                new MapSqlParameterSource("cutoff", Timestamp.valueOf(cutoff.atDay(1).atStartOfDay())));
+        if (deleted > 0) {
+            log.info("Из секции по умолчанию удалено {} посещений старше срока хранения.", deleted);
+        }
+    }
+
+    /**
+     * Замена несекционированной таблицы, созданной прежней версией сервиса, секционированной.
+     * Прежняя таблица переименовывается в endpointhits_legacy, посещения из нее
+     * переносятся отдельно в migrateLegacyTable.
+     */
+    private void replaceLegacyTable() {
+        log.info("Перенос таблицы посещений endpointhits в помесячные секции.");
+        execute("ALTER TABLE endpointhits RENAME TO " + LEGACY_TABLE);
+        execute("ALTER INDEX IF EXISTS ix_endpointhits_timestamp RENAME TO ix_endpointhits_legacy_timestamp");
+        execute(SQL_CREATE_PARTITIONED_TABLE);
+        execute("CREATE INDEX ix_endpointhits_timestamp ON endpointhits (timestamp)");
+        execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF endpointhits DEFAULT");
+    }
+
+    /**
+     * Перенос посещений из endpointhits_legacy по месяцам, каждый месяц в отдельной транзакции
+     * вместе с созданием его секции. Посещения, уже перенесенные до остановки сервиса,
+     * пропускаются по первичному ключу, поэтому прерванный перенос продолжается при следующем запуске.
+     * Посещения без времени не переносятся: время является ключом секционирования и частью
+     * первичного ключа, такие посещения не могут попасть даже в секцию по умолчанию
+     * и не учитываются статистикой. Их количество записывается в журнал.
+     */
+    private void migrateLegacyTable() {
+        Map<String, Object> range = jdbc.queryForMap(
+                "SELECT MIN(timestamp) AS first, MAX(timestamp) AS last FROM " + LEGACY_TABLE, Map.of());
+        long moved = 0;
+        if (range.get("first") != null) {
+            YearMonth first = YearMonth.from(((Timestamp) range.get("first")).toLocalDateTime());
+            YearMonth last = YearMonth.from(((Timestamp) range.get("last")).toLocalDateTime());
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                YearMonth migrated = month;
+                Integer monthMoved = transactionTemplate.execute(status -> {
+                    execute(createPartitionSql(migrated));
+                    return jdbc.update(SQL_MIGRATE_MONTH, new MapSqlParameterSource()
+                            .addValue("from", Timestamp.valueOf(migrated.atDay(1).atStartOfDay()))
+                            .addValue("to", Timestamp.valueOf(migrated.plusMonths(1).atDay(1).atStartOfDay())));
+                });
+                moved += monthMoved == null ? 0 : monthMoved;
+                log.info("Перенесены посещения за {}: {}.", month, monthMoved);
+            }
+        }
+        Integer untimed = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM " + LEGACY_TABLE + " WHERE timestamp IS NULL", Map.of(), Integer.class);
+        if (untimed != null && untimed > 0) {
+            log.warn("{} посещений без времени не перенесены в секции и удаляются вместе с таблицей "
+                    + LEGACY_TABLE + ".", untimed);
+        }
+        jdbc.queryForObject("SELECT setval('endpointhits_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM endpointhits), false)",
+                Map.of(), Long.class);
+        execute("DROP TABLE " + LEGACY_TABLE);
+        log.info("В секции перенесено {} посещений.", moved);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(:table) IS NOT NULL",
+                new MapSqlParameterSource("table", table), Boolean.class));
+    }
+
+    private String getTableKind() {
+        List<String> kinds = jdbc.queryForList(SQL_SELECT_TABLE_KIND, Map.of(), String.class);
+        return kinds.isEmpty() ? null : kinds.getFirst();
+    }
+
+    private void execute(String sql) {
+        jdbc.getJdbcOperations().execute(sql);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.statsvc.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsvc.exception.InternalServerException;
+import ru.practicum.statsvc.model.HitBucket;
+import ru.practicum.statsvc.model.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище почасовых агрегатов посещений.
+ * Агрегаты обновляются инкрементально при каждом сохранении посещений
+ * и используются при подсчете статистики вместо сырых данных.
+ * Для каждого агрегата хранится набор уникальных адресов и скетч HyperLogLog.
+ */
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "db", matchIfMissing = true)
+public class HitRollupDbStorage {
+    private static final String SQL_UPSERT_ROLLUP = """
+            INSERT INTO hit_rollup_hourly (app, uri, bucket, hits)
+            VALUES (:app, :uri, :bucket, :hits)
+            ON CONFLICT (app, uri, bucket) DO UPDATE SET hits = hit_rollup_hourly.hits + EXCLUDED.hits
+            """;
+    private static final String SQL_INSERT_ROLLUP_IP = """
+            INSERT INTO hit_rollup_ips (app, uri, bucket, ip)
+            VALUES (:app, :uri, :bucket, :ip)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String SQL_SELECT_SKETCHES = """
+            SELECT app, uri, bucket, hits, ip_sketch FROM hit_rollup_hourly
+            WHERE (app, uri, bucket) IN (:keys)
+            """;
+    private static final String SQL_SELECT_BUCKET_IPS = """
+            SELECT ip FROM hit_rollup_ips
+            WHERE app = :app AND uri = :uri AND bucket = :bucket
+            """;
+    private static final String SQL_UPDATE_SKETCH = """
+            UPDATE hit_rollup_hourly SET ip_sketch = :sketch
+            WHERE app = :app AND uri = :uri AND bucket = :bucket
+            """;
+    // ограничение количества ключей в одном запросе скетчей
+    private static final int SKETCH_CHUNK_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public HitRollupDbStorage(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Добавление агрегированных посещений к почасовым агрегатам
+     *
+     * @param buckets - агрегаты, упорядоченные по (app, uri, bucket)
+     */
+    public void addBuckets(Collection<HitBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        List<SqlParameterSource> rollups = new ArrayList<>();
+        List<SqlParameterSource> ips = new ArrayList<>();
+        for (HitBucket bucket : buckets) {
+            rollups.add(bucketParameters(bucket)
+                    .addValue("hits", bucket.getHits()));
+            for (String ip : bucket.getIps()) {
+                ips.add(bucketParameters(bucket)
+                        .addValue("ip", ip));
+            }
+        }
+        try {
+            jdbc.batchUpdate(SQL_UPSERT_ROLLUP, rollups.toArray(SqlParameterSource[]::new));
+            jdbc.batchUpdate(SQL_INSERT_ROLLUP_IP, ips.toArray(SqlParameterSource[]::new));
+            List<HitBucket> list = new ArrayList<>(buckets);
+            for (int i = 0; i < list.size(); i += SKETCH_CHUNK_SIZE) {
+                updateSketches(list.subList(i, Math.min(list.size(), i + SKETCH_CHUNK_SIZE)));
+            }
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Ошибка при обновлении агрегатов посещений. " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Обновление скетчей HyperLogLog уникальных адресов.
+     * Строки агрегатов уже заблокированы текущей транзакцией при обновлении счетчиков,
+     * поэтому чтение, объединение и запись скетча выполняются без гонок.
+     */
+    private void updateSketches(List<HitBucket> buckets) {
+        Map<List<Object>, HitBucket> byKey = new HashMap<>();
+        List<Object[]> keys = new ArrayList<>();
+        for (HitBucket bucket : buckets) {
+            byKey.put(List.of(bucket.getApp(), bucket.getUri(), bucket.getBucket()), bucket);
+            keys.add(new Object[]{bucket.getApp(), bucket.getUri(), bucket.getBucket()});
+        }
+        List<SqlParameterSource> updates = new ArrayList<>();
+        jdbc.query(SQL_SELECT_SKETCHES, new MapSqlParameterSource("keys", keys), (RowCallbackHandler) rs -> {
+            LocalDateTime bucketStart = rs.getTimestamp("bucket").toLocalDateTime();
+            HitBucket bucket = byKey.get(List.of(rs.getString("app"), rs.getString("uri"), bucketStart));
+            if (bucket == null) {
+                return;
+            }
+            byte[] stored = rs.getBytes("ip_sketch");
+            HyperLogLog sketch;
+            if (stored != null) {
+                sketch = HyperLogLog.fromBytes(stored);
+            } else if (rs.getLong("hits") > bucket.getHits()) {
+                // агрегат создан до появления скетчей, восстанавливаем по сохраненным адресам
+                sketch = new HyperLogLog();
+                jdbc.queryForList(SQL_SELECT_BUCKET_IPS, bucketParameters(bucket), String.class)
+                        .forEach(sketch::add);
+            } else {
+                sketch = new HyperLogLog();
+            }
+            bucket.getIps().forEach(sketch::add);
+            updates.add(bucketParameters(bucket).addValue("sketch", sketch.toBytes()));
+        });
+        jdbc.batchUpdate(SQL_UPDATE_SKETCH, updates.toArray(SqlParameterSource[]::new));
+    }
+
+    private static MapSqlParameterSource bucketParameters(HitBucket bucket) {
+        return new MapSqlParameterSource()
+                .addValue("app", bucket.getApp())
+                .addValue("uri", bucket.getUri())
+                .addValue("bucket", bucket.getBucket());
+    }
+}
@@ -0,0 +1,194 @@
+package ru.practicum.statsvc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statsvc.exception.InternalServerException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Сегмент файлового хранилища посещений, отображенный в память.
+ * Посещение - запись фиксированного размера: время в секундах UTC,
+ * номера app и uri в словаре и адрес (HitAddress). Количество записей хранится в заголовке
+ * и увеличивается после записи посещения, поэтому при аварийном завершении
+ * в сегменте остаются только полностью записанные посещения.
+ * Для отбора сегментов в памяти хранятся границы времени посещений и набор эндпоинтов.
+ */
+@Slf4j
+public class HitSegment {
+    public static final int RECORD_SIZE = Long.BYTES + 2 * Integer.BYTES + HitAddress.SIZE;
+    // сегменты прежнего формата хранили номер ip в словаре и не открываются
+    private static final int MAGIC = 0x48495432;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = Integer.BYTES;
+    private static final int APP_OFFSET = Long.BYTES;
+    private static final int URI_OFFSET = APP_OFFSET + Integer.BYTES;
+    private static final int IP_KIND_OFFSET = URI_OFFSET + Integer.BYTES;
+    private static final int IP_OFFSET = IP_KIND_OFFSET + 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile int count;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+    // набор эндпоинтов заменяется копией при добавлении нового эндпоинта
+    private volatile BitSet uris = new BitSet();
+
+    private HitSegment(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Открытие сегмента. Новый сегмент создается с заданной вместимостью,
+     * у существующего вместимость определяется размером файла.
+     */
+    public static HitSegment open(Path file, int capacity) {
+        try {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            int segmentCapacity = created ? capacity : (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) segmentCapacity * RECORD_SIZE);
+            HitSegment segment = new HitSegment(channel, buffer, segmentCapacity);
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(COUNT_OFFSET, 0);
+            } else if (buffer.getInt(0) != MAGIC) {
+                throw new InternalServerException("Файл " + file + " не является сегментом посещений текущего формата.");
+            } else {
+                segment.load(Math.min(buffer.getInt(COUNT_OFFSET), segmentCapacity));
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка открытия сегмента посещений " + file + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Восстановление границ времени и набора эндпоинтов по записям сегмента
+     */
+    private void load(int records) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        BitSet loaded = new BitSet();
+        for (int i = 0; i < records; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            long timestamp = buffer.getLong(position);
+            min = Math.min(min, timestamp);
+            max = Math.max(max, timestamp);
+            loaded.set(buffer.getInt(position + URI_OFFSET));
+        }
+        minTimestamp = min;
+        maxTimestamp = max;
+        uris = loaded;
+        count = records;
+    }
+
+    /**
+     * Запись посещения. Вызывается одним потоком записи.
+     *
+     * @return - false, если сегмент заполнен
+     */
+    public boolean append(long timestamp, int app, int uri, HitAddress ip) {
+        int records = count;
+        if (records == capacity) {
+            return false;
+        }
+        int position = HEADER_SIZE + records * RECORD_SIZE;
+        buffer.putLong(position, timestamp);
+        buffer.putInt(position + APP_OFFSET, app);
+        buffer.putInt(position + URI_OFFSET, uri);
+        buffer.put(position + IP_KIND_OFFSET, ip.kind());
+        buffer.putLong(position + IP_OFFSET, ip.high());
+        buffer.putLong(position + IP_OFFSET + Long.BYTES, ip.low());
+        if (timestamp < minTimestamp) {
+            minTimestamp = timestamp;
+        }
+        if (timestamp > maxTimestamp) {
+            maxTimestamp = timestamp;
+        }
+        if (!uris.get(uri)) {
+            BitSet copy = (BitSet) uris.clone();
+            copy.set(uri);
+            uris = copy;
+        }
+        buffer.putInt(COUNT_OFFSET, records + 1);
+        // публикация записи читателям
+        count = records + 1;
+        return true;
+    }
+
+    /**
+     * Признак наличия в сегменте посещений периода [from, to) по эндпоинтам отбора
+     *
+     * @param uriFilter - номера эндпоинтов или null для всех эндпоинтов
+     */
+    public boolean mayContain(long from, long to, BitSet uriFilter) {
+        if (count == 0 || maxTimestamp < from || minTimestamp >= to) {
+            return false;
+        }
+        return uriFilter == null || uriFilter.intersects(uris);
+    }
+
+    /**
+     * Перебор посещений периода [from, to) по эндпоинтам отбора
+     */
+    public void scan(long from, long to, BitSet uriFilter, RecordConsumer consumer) {
+        int records = count;
+        for (int i = 0; i < records; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            long timestamp = buffer.getLong(position);
+            if (timestamp < from || timestamp >= to) {
+                continue;
+            }
+            int uri = buffer.getInt(position + URI_OFFSET);
+            if (uriFilter != null && !uriFilter.get(uri)) {
+                continue;
+            }
+            consumer.accept(buffer.getInt(position + APP_OFFSET), uri, position);
+        }
+    }
+
+    /**
+     * Адрес записи, переданной получателю при переборе
+     *
+     * @param position - положение записи в сегменте
+     */
+    public HitAddress addressAt(int position) {
+        byte kind = buffer.get(position + IP_KIND_OFFSET);
+        if (kind == HitAddress.NONE) {
+            return HitAddress.EMPTY;
+        }
+        return new HitAddress(kind, buffer.getLong(position + IP_OFFSET),
+                buffer.getLong(position + IP_OFFSET + Long.BYTES));
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия сегмента посещений. {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Получатель записей сегмента, адрес записи читается по ее положению (addressAt)
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(int app, int uri, int position);
+    }
+}
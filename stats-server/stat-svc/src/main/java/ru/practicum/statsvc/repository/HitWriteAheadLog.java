@@ -0,0 +1,292 @@
+package ru.practicum.statsvc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statsvc.exception.InternalServerException;
+import ru.practicum.statsvc.model.EndpointHit;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал предзаписи посещений, принятых в буфер и еще не сохраненных в базу данных.
+ * Журнал состоит из сегментов wal-N.log, каждый сегмент - последовательность кадров
+ * (длина, контрольная сумма CRC32, посещения). Запись кадра без fsync переживает
+ * аварийное завершение процесса, с fsync - и операционной системы.
+ * Кадр, оборванный при аварии, и все следующие за ним при чтении пропускаются.
+ * С fsync кадры, записанные параллельными запросами, сбрасываются на диск
+ * одним вызовом force: запрос ожидает сброса, пока диск занят предыдущим вызовом,
+ * и не вызывает force, если его кадр уже сброшен вместе с чужими.
+ */
+@Slf4j
+public class HitWriteAheadLog {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    // заголовок кадра: длина и контрольная сумма
+    private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path dir;
+    private final boolean fsync;
+    // сброс на диск выполняет один поток, порядок захвата блокировок: forceLock, затем журнал
+    private final Object forceLock = new Object();
+    private FileChannel channel;
+    private long segment;
+    // номер последнего записанного кадра и последнего кадра, сброшенного на диск
+    private long written;
+    private volatile long forced;
+
+    public HitWriteAheadLog(Path dir, boolean fsync) {
+        this.dir = dir;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Номера существующих сегментов в порядке записи
+     */
+    public List<Long> segments() {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                return files
+                        .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                        .filter(Matcher::matches)
+                        .map(matcher -> Long.parseLong(matcher.group(1)))
+                        .sorted()
+                        .toList();
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка чтения журнала посещений " + dir + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Чтение посещений сегмента
+     *
+     * @param segment - номер сегмента
+     * @param consumer - получатель посещений
+     * @return - количество прочитанных посещений
+     */
+    public int replay(long segment, Consumer<EndpointHit> consumer) {
+        Path file = segmentFile(segment);
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long remaining = Files.size(file);
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return count;
+                }
+                int checksum = in.readInt();
+                remaining -= FRAME_HEADER_SIZE;
+                if (length < 0) {
+                    log.warn("Повреждена запись журнала посещений {}, остаток сегмента пропущен.", file);
+                    return count;
+                }
+                // длина оборванного или поврежденного кадра может превышать остаток файла,
+                // буфер под такой кадр не выделяется
+                if (length > remaining) {
+                    log.warn("Оборвана запись журнала посещений {}, остаток сегмента пропущен.", file);
+                    return count;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                remaining -= length;
+                if (checksum(payload) != checksum) {
+                    log.warn("Повреждена запись журнала посещений {}, остаток сегмента пропущен.", file);
+                    return count;
+                }
+                count += decode(payload, consumer);
+            }
+        } catch (EOFException e) {
+            log.warn("Оборвана запись журнала посещений {}, остаток сегмента пропущен.", file);
+            return count;
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка чтения журнала посещений " + file + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Открытие нового сегмента для записи
+     */
+    public synchronized void open(long segment) {
+        try {
+            Files.createDirectories(dir);
+            this.channel = FileChannel.open(segmentFile(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.segment = segment;
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка открытия журнала посещений " + dir + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Запись посещений одним кадром
+     */
+    public void append(List<EndpointHit> hits) {
+        byte[] payload = encode(hits);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        long number;
+        synchronized (this) {
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                throw new InternalServerException("Ошибка записи журнала посещений. " + e.getMessage());
+            }
+            number = ++written;
+        }
+        if (fsync) {
+            force(number);
+        }
+    }
+
+    /**
+     * Сброс на диск всех записанных кадров, если кадр с указанным номером еще не сброшен
+     */
+    private void force(long number) {
+        synchronized (forceLock) {
+            if (forced >= number) {
+                return;
+            }
+            long last;
+            FileChannel target;
+            synchronized (this) {
+                last = written;
+                target = channel;
+            }
+            try {
+                target.force(false);
+            } catch (IOException e) {
+                throw new InternalServerException("Ошибка записи журнала посещений. " + e.getMessage());
+            }
+            forced = last;
+        }
+    }
+
+    /**
+     * Закрытие текущего сегмента и открытие следующего
+     *
+     * @return - номер закрытого сегмента
+     */
+    public long rotate() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                long closed = segment;
+                closeChannel();
+                open(closed + 1);
+                return closed;
+            }
+        }
+    }
+
+    /**
+     * Удаление сегментов, посещения которых сохранены в базу данных
+     *
+     * @param segment - номер последнего удаляемого сегмента
+     */
+    public void deleteUpTo(long segment) {
+        for (Long number : segments()) {
+            if (number > segment) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segmentFile(number));
+            } catch (IOException e) {
+                log.warn("Не удалось удалить сегмент журнала посещений {}. {}", segmentFile(number), e.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+            forced = written;
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия журнала посещений. {}", e.getMessage());
+        }
+        channel = null;
+    }
+
+    private Path segmentFile(long segment) {
+        return dir.resolve("wal-" + segment + ".log");
+    }
+
+    private static byte[] encode(List<EndpointHit> hits) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * hits.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(hits.size());
+            for (EndpointHit hit : hits) {
+                writeNullable(out, hit.getApp());
+                writeNullable(out, hit.getUri());
+                writeNullable(out, hit.getIp());
+                out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(hit.getTimestamp().getNano());
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка записи журнала посещений. " + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int decode(byte[] payload, Consumer<EndpointHit> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String app = readNullable(in);
+            String uri = readNullable(in);
+            String ip = readNullable(in);
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            consumer.accept(new EndpointHit(null, app, uri, ip, timestamp));
+        }
+        return count;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,220 @@
+package ru.practicum.statsvc.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsvc.exception.InternalServerException;
+import ru.practicum.statsvc.exception.ValidationException;
+import ru.practicum.statsvc.mapper.HitBucketMapper;
+import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.ViewStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище посещений в файлах, отображенных в память, без базы данных.
+ * Посещения дописываются в сегменты stats.mmap.dir/segment-N.dat по
+ * stats.mmap.segment-records записей, строки app и uri хранятся в словаре,
+ * адрес ip - в самой записи.
+ * Статистика считается перебором записей сегментов, сегменты вне периода
+ * запроса и без запрошенных эндпоинтов пропускаются.
+ * Время посещений хранится с точностью до секунды. Предназначено для
+ * одного экземпляра сервиса с преобладанием чтения статистики.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "stats.storage", havingValue = "mmap")
+public class MappedStatStorage implements StatStorage {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final List<HitSegment> segments = new CopyOnWriteArrayList<>();
+    private HitDictionary dictionary;
+    private HitSegment active;
+    private long activeNumber;
+
+    public MappedStatStorage(@Value("${stats.mmap.dir:stat-data}") String dir,
+                             @Value("${stats.mmap.segment-records:1048576}") int segmentRecords) {
+        this.dir = Path.of(dir).toAbsolutePath().normalize();
+        this.segmentRecords = segmentRecords;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<Long> numbers;
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                numbers = files
+                        .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                        .filter(Matcher::matches)
+                        .map(matcher -> Long.parseLong(matcher.group(1)))
+                        .sorted()
+                        .toList();
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Ошибка чтения каталога посещений " + dir + ". " + e.getMessage());
+        }
+        dictionary = HitDictionary.open(dir.resolve("dictionary.dat"));
+        for (Long number : numbers) {
+            segments.add(HitSegment.open(segmentFile(number), segmentRecords));
+            activeNumber = number;
+        }
+        if (segments.isEmpty() || segments.getLast().isFull()) {
+            openNextSegment();
+        } else {
+            active = segments.getLast();
+        }
+        log.info("Открыто хранилище посещений {}, сегментов: {}.", dir, segments.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        segments.forEach(HitSegment::close);
+        dictionary.close();
+    }
+
+    @Override
+    public void addHit(EndpointHit hit) {
+        addHits(List.of(hit));
+    }
+
+    /**
+     * Запись посещений. Строки добавляются в словарь и записываются в файл
+     * до записи ссылающихся на них посещений.
+     */
+    @Override
+    public synchronized void addHits(List<EndpointHit> hits) {
+        int[] ids = new int[hits.size() * 2];
+        HitAddress[] addresses = new HitAddress[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            EndpointHit hit = hits.get(i);
+            if (hit.getUri() == null || hit.getTimestamp() == null) {
+                throw new ValidationException("Не задан эндпоинт или время посещения.");
+            }
+            ids[2 * i] = dictionary.idOf(HitBucketMapper.toStoredApp(hit.getApp()));
+            ids[2 * i + 1] = dictionary.idOf(hit.getUri());
+            addresses[i] = HitAddress.of(hit.getIp());
+        }
+        dictionary.flush();
+        for (int i = 0; i < hits.size(); i++) {
+            long timestamp = toSeconds(hits.get(i).getTimestamp());
+            while (!active.append(timestamp, ids[2 * i], ids[2 * i + 1], addresses[i])) {
+                openNextSegment();
+            }
+        }
+    }
+
+    @Override
+    public List<ViewStats> getViewStats(LocalDateTime start,
+                                        LocalDateTime end,
+                                        List<String> uris,
+                                        Boolean unique,
+                                        Integer size) {
+        long from = start == null ? Long.MIN_VALUE : toSeconds(start);
+        long to = end == null ? Long.MAX_VALUE : toSeconds(end);
+        BitSet uriFilter = null;
+        if (StatDbStorage.isUriFilter(uris)) {
+            uriFilter = new BitSet();
+            for (String uri : uris) {
+                int id = dictionary.find(uri);
+                if (id >= 0) {
+                    uriFilter.set(id);
+                }
+            }
+            if (uriFilter.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        // ключ - номера app и uri в словаре
+        Map<Long, long[]> hits = new HashMap<>();
+        Map<Long, Set<HitAddress>> ips = new HashMap<>();
+        for (HitSegment segment : segments) {
+            if (!segment.mayContain(from, to, uriFilter)) {
+                continue;
+            }
+            if (unique) {
+                segment.scan(from, to, uriFilter, (app, uri, position) -> {
+                    Set<HitAddress> keyIps = ips.computeIfAbsent(key(app, uri), k -> new HashSet<>());
+                    HitAddress ip = segment.addressAt(position);
+                    if (ip.kind() != HitAddress.NONE) {
+                        keyIps.add(ip);
+                    }
+                });
+            } else {
+                // как count(ip): посещения без адреса не учитываются
+                segment.scan(from, to, uriFilter, (app, uri, position) -> {
+                    long[] count = hits.computeIfAbsent(key(app, uri), k -> new long[1]);
+                    if (segment.addressAt(position).kind() != HitAddress.NONE) {
+                        count[0]++;
+                    }
+                });
+            }
+        }
+
+        Map<Long, Long> counts = new HashMap<>();
+        if (unique) {
+            ips.forEach((key, keyIps) -> counts.put(key, (long) keyIps.size()));
+        } else {
+            hits.forEach((key, count) -> counts.put(key, count[0]));
+        }
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(size == null ? Long.MAX_VALUE : size)
+                .map(entry -> new ViewStats(
+                        HitBucketMapper.fromStoredApp(dictionary.valueOf((int) (entry.getKey() >>> 32))),
+                        dictionary.valueOf(entry.getKey().intValue()),
+                        entry.getValue().intValue()))
+                .toList();
+    }
+
+    /**
+     * Перебор записей читает каждое посещение периода,
+     * поэтому точный подсчет уникальных адресов не дороже приближенного
+     */
+    @Override
+    public List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         List<String> uris,
+                                                         Integer size) {
+        return getViewStats(start, end, uris, true, size);
+    }
+
+    private void openNextSegment() {
+        activeNumber++;
+        active = HitSegment.open(segmentFile(activeNumber), segmentRecords);
+        segments.add(active);
+    }
+
+    private Path segmentFile(long number) {
+        return dir.resolve("segment-" + number + ".dat");
+    }
+
+    private static long key(int app, int uri) {
+        return ((long) app << 32) | (uri & 0xFFFFFFFFL);
+    }
+
+    private static long toSeconds(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+}
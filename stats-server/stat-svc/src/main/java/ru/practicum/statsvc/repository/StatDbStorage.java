@@ -1,22 +1,40 @@
 package ru.practicum.statsvc.repository;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.statsvc.exception.InternalServerException;
+import ru.practicum.statsvc.mapper.HitBucketMapper;
 import ru.practicum.statsvc.mapper.ViewStatsRowMapper;
 import ru.practicum.statsvc.model.EndpointHit;
+import ru.practicum.statsvc.model.HitBucket;
+import ru.practicum.statsvc.model.HyperLogLog;
 import ru.practicum.statsvc.model.ViewStats;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
+@Timed("stats.storage")
+@ConditionalOnProperty(name = "stats.storage", havingValue = "db", matchIfMissing = true)
 public class StatDbStorage implements StatStorage {
     private static final DateTimeFormatter DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final String SQL_INSERT_HIT = """
@@ -25,21 +43,19 @@ public class StatDbStorage implements StatStorage {
             """;
 
     private final NamedParameterJdbcTemplate jdbc;
+    private final HitRollupDbStorage rollupStorage;
 
-    public StatDbStorage(NamedParameterJdbcTemplate jdbc) {
+    public StatDbStorage(NamedParameterJdbcTemplate jdbc, HitRollupDbStorage rollupStorage) {
         this.jdbc = jdbc;
+        this.rollupStorage = rollupStorage;
     }
 
     @Override
+    @Transactional
     public void addHit(EndpointHit hit) {
         GeneratedKeyHolder generatedKeyHolder = new GeneratedKeyHolder();
         try {
-            jdbc.update(SQL_INSERT_HIT,
-                    new MapSqlParameterSource()
-                            .addValue("app", hit.getApp())
-                            .addValue("uri", hit.getUri())
-                            .addValue("ip", hit.getIp())
-                            .addValue("timestamp", hit.getTimestamp().format(DATA_TIME_FORMATTER), Types.TIMESTAMP),
+            jdbc.update(SQL_INSERT_HIT, toParameters(hit),
                     generatedKeyHolder, new String[]{"id"}
             );
         } catch (DataAccessException e) {
@@ -49,46 +65,91 @@ public class StatDbStorage implements StatStorage {
         // получаем идентификатор
         final Integer hitId = generatedKeyHolder.getKey().intValue();
         hit.setId(hitId);
+        rollupStorage.addBuckets(HitBucketMapper.toBuckets(List.of(hit)));
     }
 
+    /**
+     * Пакетное сохранение посещений.
+     * Идентификаторы сохраненных записей не запрашиваются.
+     *
+     * @param hits - список посещений
+     */
     @Override
-    public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Integer size) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT e.app, e.uri, count(e.ip) as hits FROM");
-        if (unique) {
-            sql.append(" (SELECT DISTINCT ON (ip, uri) app, uri, ip, timestamp FROM endpointhits) AS e");
-        } else {
-            sql.append(" endpointhits AS e");
-        }
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        Boolean whereFlag = false;
-
-        if (uris != null && !uris.isEmpty()) {
-            if (!uris.get(0).equalsIgnoreCase("/events")) {
-                sql.append(" WHERE e.uri IN (:uris)");
-                parameters.addValue("uris", uris);
-                whereFlag = true;
-            }
+    @Transactional
+    public void addHits(List<EndpointHit> hits) {
+        SqlParameterSource[] batch = hits.stream()
+                .map(this::toParameters)
+                .toArray(SqlParameterSource[]::new);
+        try {
+            jdbc.batchUpdate(SQL_INSERT_HIT, batch);
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Ошибка при сохранении в базу данных. " +
+                    e.getMessage());
         }
+        rollupStorage.addBuckets(HitBucketMapper.toBuckets(hits));
+    }
 
-        if (start != null) {
-            if (whereFlag) {
-                sql.append(" AND e.timestamp >= :start");
-            } else {
-                sql.append(" WHERE e.timestamp >= :start");
-                whereFlag = true;
-            }
-            parameters.addValue("start", start);
+    private SqlParameterSource toParameters(EndpointHit hit) {
+        return new MapSqlParameterSource()
+                .addValue("app", hit.getApp())
+                .addValue("uri", hit.getUri())
+                .addValue("ip", hit.getIp())
+                .addValue("timestamp", hit.getTimestamp().format(DATA_TIME_FORMATTER), Types.TIMESTAMP);
+    }
+
+    /**
+     * Подсчет статистики посещений.
+     * Полные часовые интервалы берутся из агрегатов, неполные интервалы
+     * на границах периода досчитываются по сырым данным.
+     * Как и прежний запрос по сырым данным, учитываются только посещения с адресом (count(ip)),
+     * посещения без приложения возвращаются с app = null. Приложение, заданное пустой строкой,
+     * хранится в агрегатах так же, как отсутствующее, и тоже возвращается как null.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Integer size) {
+        return getViewStats(start, end, uris, unique, size, List.of());
+    }
+
+    /**
+     * Подсчет статистики посещений с учетом посещений, еще не сохраненных в базу данных.
+     * Несохраненные посещения передаются в запрос массивами и объединяются
+     * с агрегатами и сырыми данными, поэтому уникальные адреса считаются точно.
+     *
+     * @param pending - агрегаты несохраненных посещений, отобранные по периоду и эндпоинтам запроса
+     */
+    @Transactional(readOnly = true)
+    public List<ViewStats> getViewStats(LocalDateTime start,
+                                        LocalDateTime end,
+                                        List<String> uris,
+                                        Boolean unique,
+                                        Integer size,
+                                        Collection<HitBucket> pending) {
+        Coverage coverage = Coverage.of(start, end, uris);
+        MapSqlParameterSource parameters = coverage.parameters();
+        List<String> parts = new ArrayList<>();
+        if (coverage.rollupConditions() != null) {
+            parts.add(unique
+                    ? "SELECT r.app, r.uri, r.ip FROM hit_rollup_ips AS r" + where(coverage.rollupConditions())
+                    : "SELECT r.app, r.uri, r.hits FROM hit_rollup_hourly AS r" + where(coverage.rollupConditions()));
         }
-        if (end != null) {
-            if (whereFlag) {
-                sql.append(" AND e.timestamp < :end");
-            } else {
-                sql.append(" WHERE e.timestamp < :end");
-            }
-            parameters.addValue("end", end);
+        for (List<String> rawConditions : coverage.rawConditions()) {
+            parts.add(unique
+                    ? "SELECT COALESCE(e.app, '') AS app, e.uri, e.ip FROM endpointhits AS e"
+                    + where(rawConditions)
+                    : "SELECT COALESCE(e.app, '') AS app, e.uri, COUNT(e.ip) AS hits FROM endpointhits AS e"
+                    + where(rawConditions) + " GROUP BY 1, 2");
+        }
+        if (!pending.isEmpty()) {
+            parts.add(pendingPart(pending, unique, parameters));
         }
-        sql.append(" GROUP BY e.uri, e.app ORDER BY hits DESC");
+
+        StringBuilder sql = new StringBuilder();
+        sql.append(unique
+                ? "SELECT s.app, s.uri, COUNT(DISTINCT s.ip) AS hits FROM ("
+                : "SELECT s.app, s.uri, SUM(s.hits) AS hits FROM (");
+        sql.append(String.join(" UNION ALL ", parts));
+        sql.append(") AS s GROUP BY s.uri, s.app ORDER BY hits DESC");
         if (size != null) {
             parameters.addValue("size", size);
             sql.append(" LIMIT :size");
@@ -100,4 +161,199 @@ public class StatDbStorage implements StatStorage {
             return List.of();
         }
     }
+
+    private static String pendingPart(Collection<HitBucket> pending, boolean unique, MapSqlParameterSource parameters) {
+        List<String> apps = new ArrayList<>();
+        List<String> pendingUris = new ArrayList<>();
+        if (unique) {
+            List<String> ips = new ArrayList<>();
+            for (HitBucket bucket : pending) {
+                for (String ip : bucket.getIps()) {
+                    apps.add(bucket.getApp());
+                    pendingUris.add(bucket.getUri());
+                    ips.add(ip);
+                }
+            }
+            parameters.addValue("pendingIps", new SqlParameterValue(Types.ARRAY, ips.toArray(String[]::new)));
+        } else {
+            List<Long> hits = new ArrayList<>();
+            for (HitBucket bucket : pending) {
+                apps.add(bucket.getApp());
+                pendingUris.add(bucket.getUri());
+                hits.add(bucket.getHits());
+            }
+            parameters.addValue("pendingHits", new SqlParameterValue(Types.ARRAY, hits.toArray(Long[]::new)));
+        }
+        parameters.addValue("pendingApps", new SqlParameterValue(Types.ARRAY, apps.toArray(String[]::new)));
+        parameters.addValue("pendingUris", new SqlParameterValue(Types.ARRAY, pendingUris.toArray(String[]::new)));
+        return unique
+                ? "SELECT p.app, p.uri, p.ip FROM unnest(:pendingApps, :pendingUris, :pendingIps) AS p(app, uri, ip)"
+                : "SELECT p.app, p.uri, p.hits FROM unnest(:pendingApps, :pendingUris, :pendingHits) AS p(app, uri, hits)";
+    }
+
+    /**
+     * Приближенный подсчет уникальных посещений.
+     * Скетчи HyperLogLog часовых агрегатов объединяются по каждому эндпоинту,
+     * адреса из сырых данных на границах периода добавляются в скетч,
+     * поэтому объем обработки зависит от количества интервалов, а не посещений.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         List<String> uris,
+                                                         Integer size) {
+        return getApproximateUniqueViewStats(start, end, uris, size, List.of());
+    }
+
+    /**
+     * Приближенный подсчет уникальных посещений с учетом посещений, еще не сохраненных в базу данных
+     *
+     * @param pending - агрегаты несохраненных посещений, отобранные по периоду и эндпоинтам запроса
+     */
+    @Transactional(readOnly = true)
+    public List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         List<String> uris,
+                                                         Integer size,
+                                                         Collection<HitBucket> pending) {
+        Coverage coverage = Coverage.of(start, end, uris);
+        MapSqlParameterSource parameters = coverage.parameters();
+        Map<List<String>, HyperLogLog> sketches = new HashMap<>();
+        try {
+            if (coverage.rollupConditions() != null) {
+                String conditions = where(coverage.rollupConditions());
+                jdbc.query("SELECT r.app, r.uri, r.ip_sketch FROM hit_rollup_hourly AS r" + conditions
+                                + " AND r.ip_sketch IS NOT NULL",
+                        parameters,
+                        (RowCallbackHandler) rs -> sketches
+                                .computeIfAbsent(List.of(rs.getString("app"), rs.getString("uri")),
+                                        k -> new HyperLogLog())
+                                .merge(HyperLogLog.fromBytes(rs.getBytes("ip_sketch"))));
+                // агрегаты, созданные до появления скетчей, досчитываются по адресам
+                jdbc.query("SELECT i.app, i.uri, i.ip FROM hit_rollup_ips AS i"
+                                + " JOIN hit_rollup_hourly AS r"
+                                + " ON r.app = i.app AND r.uri = i.uri AND r.bucket = i.bucket"
+                                + conditions + " AND r.ip_sketch IS NULL",
+                        parameters,
+                        (RowCallbackHandler) rs -> addIp(sketches, rs));
+            }
+            for (List<String> rawConditions : coverage.rawConditions()) {
+                jdbc.query("SELECT COALESCE(e.app, '') AS app, e.uri, e.ip FROM endpointhits AS e"
+                                + where(rawConditions) + " AND e.ip IS NOT NULL",
+                        parameters,
+                        (RowCallbackHandler) rs -> addIp(sketches, rs));
+            }
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Ошибка при чтении статистики. " + e.getMessage());
+        }
+        for (HitBucket bucket : pending) {
+            HyperLogLog sketch = sketches.computeIfAbsent(List.of(bucket.getApp(), bucket.getUri()),
+                    k -> new HyperLogLog());
+            bucket.getIps().forEach(sketch::add);
+        }
+        return sketches.entrySet().stream()
+                .map(entry -> new ViewStats(HitBucketMapper.fromStoredApp(entry.getKey().get(0)),
+                        entry.getKey().get(1),
+                        (int) entry.getValue().estimate()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .limit(size == null ? Long.MAX_VALUE : size)
+                .toList();
+    }
+
+    private static void addIp(Map<List<String>, HyperLogLog> sketches, ResultSet rs) throws SQLException {
+        sketches.computeIfAbsent(List.of(rs.getString("app"), rs.getString("uri")), k -> new HyperLogLog())
+                .add(rs.getString("ip"));
+    }
+
+    /**
+     * Признак отбора статистики по списку эндпоинтов.
+     * Пустой список и список, начинающийся с /events, означают все эндпоинты.
+     */
+    static boolean isUriFilter(List<String> uris) {
+        return uris != null && !uris.isEmpty() && !uris.get(0).equalsIgnoreCase("/events");
+    }
+
+    private static String where(List<String> conditions) {
+        if (conditions.isEmpty()) {
+            return " WHERE TRUE";
+        }
+        return " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Разбиение периода запроса на часть, покрытую часовыми агрегатами,
+     * и неполные интервалы на границах, которые читаются из сырых данных.
+     *
+     * @param parameters       - параметры запроса
+     * @param rollupConditions - условия отбора агрегатов или null, если агрегаты не используются
+     * @param rawConditions    - условия отбора сырых данных по каждому интервалу на границах периода.
+     *                         Интервалы читаются отдельными частями запроса без OR, чтобы из плана
+     *                         исключались не относящиеся к ним секции endpointhits.
+     */
+    private record Coverage(MapSqlParameterSource parameters,
+                            List<String> rollupConditions,
+                            List<List<String>> rawConditions) {
+
+        static Coverage of(LocalDateTime start, LocalDateTime end, List<String> uris) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            boolean uriFilter = isUriFilter(uris);
+            if (uriFilter) {
+                // массив вместо списка значений IN: количество параметров запроса не зависит от числа эндпоинтов
+                parameters.addValue("uris", new SqlParameterValue(Types.ARRAY, uris.toArray(String[]::new)));
+            }
+            if (start != null) {
+                parameters.addValue("start", start);
+            }
+            if (end != null) {
+                parameters.addValue("end", end);
+            }
+
+            // границы периода, целиком покрытого часовыми агрегатами
+            LocalDateTime rollupStart = start == null ? null : ceilBucket(start);
+            LocalDateTime rollupEnd = end == null ? null : HitBucketMapper.toBucket(end);
+            boolean useRollup = rollupStart == null || rollupEnd == null || rollupStart.isBefore(rollupEnd);
+
+            List<String> rollupConditions = null;
+            List<String> rawRanges = new ArrayList<>();
+            if (useRollup) {
+                rollupConditions = new ArrayList<>();
+                if (uriFilter) {
+                    rollupConditions.add("r.uri = ANY(:uris)");
+                }
+                if (rollupStart != null) {
+                    rollupConditions.add("r.bucket >= :rollupStart");
+                    parameters.addValue("rollupStart", rollupStart);
+                }
+                if (rollupEnd != null) {
+                    rollupConditions.add("r.bucket < :rollupEnd");
+                    parameters.addValue("rollupEnd", rollupEnd);
+                }
+                if (start != null && start.isBefore(rollupStart)) {
+                    rawRanges.add("e.timestamp >= :start AND e.timestamp < :rollupStart");
+                }
+                if (end != null && rollupEnd.isBefore(end)) {
+                    rawRanges.add("e.timestamp >= :rollupEnd AND e.timestamp < :end");
+                }
+            } else {
+                rawRanges.add("e.timestamp >= :start AND e.timestamp < :end");
+            }
+
+            List<List<String>> rawConditions = new ArrayList<>();
+            for (String rawRange : rawRanges) {
+                List<String> conditions = new ArrayList<>();
+                if (uriFilter) {
+                    conditions.add("e.uri = ANY(:uris)");
+                }
+                conditions.add(rawRange);
+                rawConditions.add(conditions);
+            }
+            return new Coverage(parameters, rollupConditions, rawConditions);
+        }
+
+        private static LocalDateTime ceilBucket(LocalDateTime timestamp) {
+            LocalDateTime bucket = HitBucketMapper.toBucket(timestamp);
+            return bucket.equals(timestamp) ? bucket : bucket.plusHours(1);
+        }
+    }
 }
@@ -9,5 +9,9 @@ import java.util.List;
 public interface StatStorage {
     void addHit(EndpointHit hit);
 
+    void addHits(List<EndpointHit> hits);
+
     List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Integer size);
+
+    List<ViewStats> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer size);
 }
@@ -2,6 +2,7 @@ package ru.practicum.statsvc.service;
 
 import ru.practicum.statdto.HitDto;
 import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
 
 import java.util.List;
 
@@ -9,5 +10,10 @@ public interface StatService {
 
     public void addHit(HitDto hitDto);
 
-    public List<StatsDto> getStats(String startTxt, String endTxt, List<String> uris, Boolean unique, Integer size);
+    public void addHits(List<HitDto> hitDtos);
+
+    public List<StatsDto> getStats(String startTxt, String endTxt, List<String> uris, Boolean unique, Integer size,
+                                   String precision);
+
+    public List<int[]> queryStats(StatsQueryDto query);
 }
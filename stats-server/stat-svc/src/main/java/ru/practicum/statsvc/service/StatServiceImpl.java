@@ -1,26 +1,35 @@
 package ru.practicum.statsvc.service;
 
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.statdto.HitDto;
 import ru.practicum.statdto.StatsDto;
+import ru.practicum.statdto.StatsQueryDto;
+import ru.practicum.statsvc.enums.StatPrecision;
 import ru.practicum.statsvc.exception.ValidationException;
 import ru.practicum.statsvc.mapper.EndpointMapper;
 import ru.practicum.statsvc.mapper.ViewStatsMapper;
-import ru.practicum.statsvc.repository.StatDbStorage;
+import ru.practicum.statsvc.model.ViewStats;
+import ru.practicum.statsvc.repository.StatStorage;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Сервис статистики посещений.
+ * Транзакции открывает хранилище: буферу посещений и файловому хранилищу
+ * соединение с базой данных не требуется.
+ */
 @Service
-@Transactional
 public class StatServiceImpl implements StatService {
     private static final DateTimeFormatter DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private final StatDbStorage storage;
+    private final StatStorage storage;
 
-    public StatServiceImpl(StatDbStorage storage) {
+    public StatServiceImpl(StatStorage storage) {
         this.storage = storage;
     }
 
@@ -29,12 +38,76 @@ public class StatServiceImpl implements StatService {
         storage.addHit(EndpointMapper.toEndpointHit(hitDto));
     }
 
+    @Override
+    public void addHits(List<HitDto> hitDtos) {
+        if (hitDtos.isEmpty()) {
+            return;
+        }
+        storage.addHits(hitDtos.stream()
+                .map(EndpointMapper::toEndpointHit)
+                .toList());
+    }
+
     @Override
     public List<StatsDto> getStats(String startTxt,
                                    String endTxt,
                                    List<String> uris,
                                    Boolean unique,
-                                   Integer size) {
+                                   Integer size,
+                                   String precision) {
+        StatPrecision statPrecision = StatPrecision.from(precision)
+                .orElseThrow(() -> new ValidationException("Недопустимое значение точности подсчета " + precision));
+        LocalDateTime[] period = parsePeriod(startTxt, endTxt);
+        LocalDateTime start = period[0];
+        LocalDateTime end = period[1];
+        // приближенный подсчет применяется только к уникальным посещениям,
+        // общее количество посещений агрегаты дают точно
+        List<ViewStats> viewStats;
+        if (unique && statPrecision == StatPrecision.APPROXIMATE) {
+            viewStats = storage.getApproximateUniqueViewStats(start, end, uris, size);
+        } else {
+            viewStats = storage.getViewStats(start, end, uris, unique, size);
+        }
+        return viewStats.stream()
+                .map(ViewStatsMapper::toDto)
+                .toList();
+    }
+
+    /**
+     * Статистика группы эндпоинтов вида prefix + id.
+     * Посещения одного эндпоинта разными приложениями суммируются.
+     */
+    @Override
+    public List<int[]> queryStats(StatsQueryDto query) {
+        if (query.getPrefix() == null || query.getPrefix().isBlank()) {
+            throw new ValidationException("Отсутствует префикс эндпоинтов.");
+        }
+        if (query.getIds() == null || query.getIds().isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime[] period = parsePeriod(query.getStart(), query.getEnd());
+        String prefix = query.getPrefix();
+        List<String> uris = query.getIds().stream()
+                .distinct()
+                .map(id -> prefix + id)
+                .toList();
+        List<ViewStats> viewStats = storage.getViewStats(period[0], period[1], uris,
+                Boolean.TRUE.equals(query.getUnique()), null);
+        Map<Integer, Integer> hits = new LinkedHashMap<>();
+        for (ViewStats stats : viewStats) {
+            hits.merge(Integer.parseInt(stats.getUri().substring(prefix.length())), stats.getHits(), Integer::sum);
+        }
+        List<int[]> result = new ArrayList<>(hits.size());
+        hits.forEach((id, count) -> result.add(new int[]{id, count}));
+        return result;
+    }
+
+    /**
+     * Разбор границ периода запроса
+     *
+     * @return - массив из начала и окончания периода, null - если граница не задана
+     */
+    private static LocalDateTime[] parsePeriod(String startTxt, String endTxt) {
         LocalDateTime start = null;
         LocalDateTime end = null;
         try {
@@ -59,9 +132,6 @@ public class StatServiceImpl implements StatService {
                 throw new ValidationException("Указан недопустимый промежуток времени");
             }
         }
-        return storage.getViewStats(start, end, uris, unique, size)
-                .stream()
-                .map(ViewStatsMapper::toDto)
-                .toList();
+        return new LocalDateTime[]{start, end};
     }
 }
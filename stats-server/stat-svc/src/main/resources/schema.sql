@@ -1,8 +1,67 @@
+-- посещения хранятся в помесячных секциях, секции создает и удаляет HitPartitionManager;
+-- таблица, созданная до секционирования, переносится в секции при запуске сервиса
+CREATE SEQUENCE IF NOT EXISTS endpointhits_seq;
+
 CREATE TABLE IF NOT EXISTS endpointhits
 (
-    id        INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    id        INTEGER DEFAULT nextval('endpointhits_seq') NOT NULL,
     app       VARCHAR(128),
     uri       VARCHAR(128),
     ip        VARCHAR(128),
-    timestamp TIMESTAMP WITHOUT TIME ZONE
+    timestamp TIMESTAMP WITHOUT TIME ZONE                NOT NULL,
+    CONSTRAINT pk_endpointhits PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX IF NOT EXISTS ix_endpointhits_timestamp ON endpointhits (timestamp);
+
+-- почасовые агрегаты посещений
+CREATE TABLE IF NOT EXISTS hit_rollup_hourly
+(
+    app       VARCHAR(128)                NOT NULL,
+    uri       VARCHAR(128)                NOT NULL,
+    bucket    TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits      BIGINT                      NOT NULL,
+    ip_sketch BYTEA,
+    CONSTRAINT pk_hit_rollup_hourly PRIMARY KEY (app, uri, bucket)
+);
+
+-- скетч HyperLogLog уникальных адресов для приближенного подсчета
+ALTER TABLE hit_rollup_hourly ADD COLUMN IF NOT EXISTS ip_sketch BYTEA;
+
+-- уникальные адреса посетителей в пределах часового агрегата
+CREATE TABLE IF NOT EXISTS hit_rollup_ips
+(
+    app    VARCHAR(128)                NOT NULL,
+    uri    VARCHAR(128)                NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    ip     VARCHAR(128)                NOT NULL,
+    CONSTRAINT pk_hit_rollup_ips PRIMARY KEY (app, uri, bucket, ip)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_rollup_hourly_bucket ON hit_rollup_hourly (bucket);
+CREATE INDEX IF NOT EXISTS ix_hit_rollup_ips_bucket ON hit_rollup_ips (bucket);
+
+-- первичное заполнение агрегатов по ранее сохраненным посещениям
+INSERT INTO hit_rollup_hourly (app, uri, bucket, hits)
+SELECT COALESCE(app, ''), uri, date_trunc('hour', timestamp), COUNT(ip)
+FROM endpointhits
+WHERE uri IS NOT NULL
+  AND timestamp IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM hit_rollup_hourly)
+GROUP BY 1, 2, 3;
+
+INSERT INTO hit_rollup_ips (app, uri, bucket, ip)
+SELECT DISTINCT COALESCE(app, ''), uri, date_trunc('hour', timestamp), ip
+FROM endpointhits
+WHERE uri IS NOT NULL
+  AND ip IS NOT NULL
+  AND timestamp IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM hit_rollup_ips);
+
+-- последний сегмент журнала буфера посещений, посещения которого сохранены в базу данных
+CREATE TABLE IF NOT EXISTS hit_wal_checkpoint
+(
+    wal_dir VARCHAR(512) NOT NULL,
+    segment BIGINT       NOT NULL,
+    CONSTRAINT pk_hit_wal_checkpoint PRIMARY KEY (wal_dir)
 );
@@ -0,0 +1,82 @@
+package ru.practicum.statsvc.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    // три стандартные ошибки 1.04 / sqrt(4096)
+    private static final double ERROR_BOUND = 3 * 1.04 / Math.sqrt(HyperLogLog.REGISTERS);
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void estimateIsWithinErrorBound() {
+        for (int cardinality : new int[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = sketch("192.168.", 0, cardinality);
+            double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+            assertTrue(error <= ERROR_BOUND,
+                    "Ошибка оценки " + error + " для " + cardinality + " уникальных значений");
+        }
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = sketch("10.0.0.", 0, 1_000);
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add("10.0.0." + i);
+        }
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog first = sketch("ip-", 0, 60_000);
+        HyperLogLog second = sketch("ip-", 40_000, 100_000);
+        first.merge(second);
+
+        HyperLogLog union = sketch("ip-", 0, 100_000);
+        assertArrayEquals(union.toBytes(), first.toBytes());
+        double error = Math.abs(first.estimate() - 100_000) / 100_000.0;
+        assertTrue(error <= ERROR_BOUND, "Ошибка оценки объединения " + error);
+    }
+
+    @Test
+    void mergeWithEmptySketchKeepsEstimate() {
+        HyperLogLog sketch = sketch("ip-", 0, 5_000);
+        long estimate = sketch.estimate();
+        sketch.merge(new HyperLogLog());
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    void sparseSketchSurvivesSerialization() {
+        HyperLogLog sketch = sketch("ip-", 0, 50);
+        byte[] bytes = sketch.toBytes();
+        assertTrue(bytes.length < HyperLogLog.REGISTERS, "Скетч с малым количеством значений должен быть разреженным");
+        assertArrayEquals(bytes, HyperLogLog.fromBytes(bytes).toBytes());
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void denseSketchSurvivesSerialization() {
+        HyperLogLog sketch = sketch("ip-", 0, 100_000);
+        byte[] bytes = sketch.toBytes();
+        assertEquals(1 + HyperLogLog.REGISTERS, bytes.length);
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    private static HyperLogLog sketch(String prefix, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(prefix + i);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.statsvc.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HitAddressTest {
+
+    @Test
+    void nullIsEmpty() {
+        assertSame(HitAddress.EMPTY, HitAddress.of(null));
+        assertEquals(HitAddress.NONE, HitAddress.of(null).kind());
+    }
+
+    @Test
+    void ipv4IsStoredAsMappedIpv6() {
+        HitAddress address = HitAddress.of("192.168.0.1");
+        assertEquals(new HitAddress(HitAddress.ADDRESS, 0, 0xFFFF_C0A8_0001L), address);
+        assertEquals(new HitAddress(HitAddress.ADDRESS, 0, 0xFFFF_0000_0000L), HitAddress.of("0.0.0.0"));
+        assertEquals(new HitAddress(HitAddress.ADDRESS, 0, 0xFFFF_FFFF_FFFFL), HitAddress.of("255.255.255.255"));
+    }
+
+    @Test
+    void mappedIpv6EqualsIpv4() {
+        assertEquals(HitAddress.of("192.168.0.1"), HitAddress.of("::ffff:192.168.0.1"));
+        assertEquals(HitAddress.of("192.168.0.1"), HitAddress.of("::FFFF:C0A8:1"));
+    }
+
+    @Test
+    void ipv6IsParsedInAnyNotation() {
+        HitAddress address = HitAddress.of("2001:db8::1");
+        assertEquals(new HitAddress(HitAddress.ADDRESS, 0x2001_0DB8_0000_0000L, 1), address);
+        assertEquals(address, HitAddress.of("2001:0DB8:0000:0000:0000:0000:0000:0001"));
+        assertEquals(new HitAddress(HitAddress.ADDRESS, 0, 1), HitAddress.of("::1"));
+    }
+
+    @Test
+    void invalidIpv4IsDigest() {
+        for (String value : new String[]{"256.1.1.1", "01.2.3.4", "1.2.3", "1.2.3.4.5", "1.2.3.", "1..2.3", "", "1.2.3.4 "}) {
+            assertEquals(HitAddress.DIGEST, HitAddress.of(value).kind(), value);
+        }
+    }
+
+    @Test
+    void invalidIpv6IsDigest() {
+        for (String value : new String[]{"2001:db8::1::2", "12345::1", "fe80::1%eth0", "::g"}) {
+            assertEquals(HitAddress.DIGEST, HitAddress.of(value).kind(), value);
+        }
+    }
+
+    @Test
+    void hostNameIsDigestWithoutLookup() {
+        HitAddress address = HitAddress.of("localhost");
+        assertEquals(HitAddress.DIGEST, address.kind());
+        assertNotEquals(HitAddress.of("127.0.0.1"), address);
+    }
+
+    @Test
+    void digestIsStableAndDistinguishesValues() {
+        assertEquals(HitAddress.of("unknown"), HitAddress.of("unknown"));
+        assertNotEquals(HitAddress.of("unknown"), HitAddress.of("Unknown"));
+        assertNotEquals(HitAddress.of("1.2.3"), HitAddress.of("1.2.4"));
+    }
+}
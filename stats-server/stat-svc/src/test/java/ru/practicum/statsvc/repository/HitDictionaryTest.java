@@ -0,0 +1,107 @@
+package ru.practicum.statsvc.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HitDictionaryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void idsSurviveReopen() {
+        HitDictionary dictionary = HitDictionary.open(file());
+        assertEquals(0, dictionary.idOf("ewm-main-service"));
+        assertEquals(1, dictionary.idOf("/events/1"));
+        assertEquals(0, dictionary.idOf("ewm-main-service"));
+        assertEquals(-1, dictionary.find("/events/2"));
+        dictionary.close();
+
+        HitDictionary reopened = HitDictionary.open(file());
+        assertEquals(0, reopened.find("ewm-main-service"));
+        assertEquals(1, reopened.find("/events/1"));
+        assertEquals("/events/1", reopened.valueOf(1));
+        assertEquals(2, reopened.idOf("/события/2"));
+        reopened.close();
+
+        HitDictionary again = HitDictionary.open(file());
+        assertEquals("/события/2", again.valueOf(2));
+        again.close();
+    }
+
+    @Test
+    void truncatedValueIsDiscarded() throws IOException {
+        long size = writeValues("ewm-main-service", "/events/1", "/events/2");
+        truncate(size - 3);
+
+        assertTruncatedToTwoValues(size);
+    }
+
+    @Test
+    void truncatedLengthIsDiscarded() throws IOException {
+        long size = writeValues("ewm-main-service", "/events/1", "/events/2");
+        truncate(size - "/events/2".length() - 2);
+
+        assertTruncatedToTwoValues(size);
+    }
+
+    @Test
+    void negativeLengthIsDiscarded() throws IOException {
+        long size = writeValues("ewm-main-service", "/events/1", "/events/2");
+        try (RandomAccessFile raf = new RandomAccessFile(file().toFile(), "rw")) {
+            raf.seek(size - Integer.BYTES - "/events/2".length());
+            raf.writeInt(-1);
+        }
+
+        assertTruncatedToTwoValues(size);
+    }
+
+    /**
+     * После открытия в словаре две первые строки, файл обрезан по их концу,
+     * новая строка дописывается на место отброшенной
+     */
+    private void assertTruncatedToTwoValues(long size) throws IOException {
+        long twoValues = size - Integer.BYTES - "/events/2".length();
+        HitDictionary dictionary = HitDictionary.open(file());
+        assertEquals(1, dictionary.find("/events/1"));
+        assertEquals(-1, dictionary.find("/events/2"));
+        assertEquals(twoValues, Files.size(file()));
+        assertEquals(2, dictionary.idOf("/events/3"));
+        dictionary.close();
+
+        HitDictionary reopened = HitDictionary.open(file());
+        assertEquals(2, reopened.find("/events/3"));
+        assertEquals(size, Files.size(file()));
+        reopened.close();
+    }
+
+    private long writeValues(String... values) throws IOException {
+        HitDictionary dictionary = HitDictionary.open(file());
+        long size = 0;
+        for (String value : values) {
+            dictionary.idOf(value);
+            size += Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        dictionary.close();
+        assertEquals(size, Files.size(file()));
+        return size;
+    }
+
+    private void truncate(long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file().toFile(), "rw")) {
+            raf.setLength(size);
+        }
+    }
+
+    private Path file() {
+        return dir.resolve("dictionary.dat");
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.statsvc.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.statsvc.exception.InternalServerException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitSegmentTest {
+    // размер заголовка сегмента: признак формата, количество записей и резерв
+    private static final int HEADER_SIZE = 16;
+    private static final HitAddress ADDRESS = HitAddress.of("10.0.0.1");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndScan() {
+        HitSegment segment = HitSegment.open(file(), 4);
+        assertTrue(segment.append(100, 0, 1, ADDRESS));
+        assertTrue(segment.append(200, 0, 2, HitAddress.EMPTY));
+        assertTrue(segment.append(300, 1, 1, ADDRESS));
+
+        List<Integer> positions = new ArrayList<>();
+        segment.scan(150, 400, uris(1), (app, uri, position) -> positions.add(position));
+        assertEquals(1, positions.size());
+        assertEquals(ADDRESS, segment.addressAt(positions.getFirst()));
+
+        List<HitAddress> addresses = new ArrayList<>();
+        segment.scan(0, 1000, null, (app, uri, position) -> addresses.add(segment.addressAt(position)));
+        assertEquals(List.of(ADDRESS, HitAddress.EMPTY, ADDRESS), addresses);
+        segment.close();
+    }
+
+    @Test
+    void appendReturnsFalseWhenFull() {
+        HitSegment segment = HitSegment.open(file(), 2);
+        assertTrue(segment.append(100, 0, 1, ADDRESS));
+        assertTrue(segment.append(100, 0, 1, ADDRESS));
+        assertTrue(segment.isFull());
+        assertFalse(segment.append(100, 0, 1, ADDRESS));
+        segment.close();
+    }
+
+    @Test
+    void reopenRestoresRecordsAndBounds() {
+        HitSegment segment = HitSegment.open(file(), 8);
+        segment.append(100, 0, 1, ADDRESS);
+        segment.append(300, 0, 5, ADDRESS);
+        segment.close();
+
+        HitSegment reopened = HitSegment.open(file(), 1);
+        assertEquals(2, count(reopened));
+        assertTrue(reopened.mayContain(100, 101, null));
+        assertTrue(reopened.mayContain(300, 301, uris(5)));
+        assertFalse(reopened.mayContain(301, 1000, null));
+        assertFalse(reopened.mayContain(0, 100, null));
+        assertFalse(reopened.mayContain(0, 1000, uris(2)));
+        // вместимость определяется размером файла, а не параметром открытия
+        assertFalse(reopened.isFull());
+        reopened.close();
+    }
+
+    @Test
+    void reopenAfterPartialWriteIgnoresUncountedRecord() throws IOException {
+        HitSegment segment = HitSegment.open(file(), 4);
+        segment.append(100, 0, 1, ADDRESS);
+        segment.append(200, 0, 1, ADDRESS);
+        segment.close();
+        // запись третьего посещения оборвана до увеличения количества записей в заголовке
+        try (RandomAccessFile raf = new RandomAccessFile(file().toFile(), "rw")) {
+            raf.seek(HEADER_SIZE + 2L * HitSegment.RECORD_SIZE);
+            raf.writeLong(5000);
+            raf.writeInt(7);
+        }
+
+        HitSegment reopened = HitSegment.open(file(), 4);
+        assertEquals(2, count(reopened));
+        assertFalse(reopened.mayContain(201, 10_000, null));
+        assertFalse(reopened.mayContain(0, 10_000, uris(7)));
+        // следующее посещение записывается на место оборванного
+        assertTrue(reopened.append(300, 0, 2, HitAddress.EMPTY));
+        reopened.close();
+
+        HitSegment again = HitSegment.open(file(), 4);
+        List<HitAddress> addresses = new ArrayList<>();
+        again.scan(0, 10_000, null, (app, uri, position) -> addresses.add(again.addressAt(position)));
+        assertEquals(List.of(ADDRESS, ADDRESS, HitAddress.EMPTY), addresses);
+        assertFalse(again.mayContain(301, 10_000, null));
+        again.close();
+    }
+
+    @Test
+    void reopenLimitsCountByFileSize() throws IOException {
+        HitSegment segment = HitSegment.open(file(), 4);
+        for (int i = 0; i < 4; i++) {
+            segment.append(100 + i, 0, 1, ADDRESS);
+        }
+        segment.close();
+        // файл оборван посередине последней записи
+        try (RandomAccessFile raf = new RandomAccessFile(file().toFile(), "rw")) {
+            raf.setLength(HEADER_SIZE + 3L * HitSegment.RECORD_SIZE + 5);
+        }
+
+        HitSegment reopened = HitSegment.open(file(), 4);
+        assertEquals(3, count(reopened));
+        assertTrue(reopened.isFull());
+        reopened.close();
+    }
+
+    @Test
+    void openRejectsFileOfAnotherFormat() throws IOException {
+        Files.write(file(), new byte[HEADER_SIZE + HitSegment.RECORD_SIZE]);
+
+        assertThrows(InternalServerException.class, () -> HitSegment.open(file(), 4));
+    }
+
+    private Path file() {
+        return dir.resolve("hits-1.seg");
+    }
+
+    private static int count(HitSegment segment) {
+        int[] count = new int[1];
+        segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, null, (app, uri, position) -> count[0]++);
+        return count[0];
+    }
+
+    private static BitSet uris(int uri) {
+        BitSet uris = new BitSet();
+        uris.set(uri);
+        return uris;
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.statsvc.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.statsvc.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HitWriteAheadLogTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 10, 18, 12, 30, 15, 123_000_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReturnsAllFrames() {
+        HitWriteAheadLog wal = new HitWriteAheadLog(dir, true);
+        wal.open(1);
+        wal.append(List.of(hit("/events/1", "10.0.0.1"), hit("/events/2", null)));
+        wal.append(List.of(hit("/events/3", "::1")));
+        wal.close();
+
+        List<EndpointHit> hits = replay(1);
+        assertEquals(3, hits.size());
+        assertEquals("ewm-main-service", hits.get(0).getApp());
+        assertEquals("/events/1", hits.get(0).getUri());
+        assertEquals("10.0.0.1", hits.get(0).getIp());
+        assertEquals(TIMESTAMP, hits.get(0).getTimestamp());
+        assertNull(hits.get(1).getIp());
+        assertEquals("::1", hits.get(2).getIp());
+    }
+
+    @Test
+    void truncatedPayloadIsSkipped() throws IOException {
+        long frameSize = writeFrames(2);
+        truncate(2 * frameSize - 3);
+
+        assertEquals(2, replay(1).size());
+    }
+
+    @Test
+    void truncatedHeaderIsSkipped() throws IOException {
+        long frameSize = writeFrames(2);
+        truncate(frameSize + Integer.BYTES + 1);
+
+        assertEquals(2, replay(1).size());
+    }
+
+    @Test
+    void corruptedPayloadAndFollowingFramesAreSkipped() throws IOException {
+        long frameSize = writeFrames(3);
+        // последний байт полезной нагрузки второго кадра
+        long position = 2 * frameSize - 1;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile().toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+
+        assertEquals(2, replay(1).size());
+    }
+
+    @Test
+    void corruptedLengthIsSkippedWithoutAllocation() throws IOException {
+        long frameSize = writeFrames(3);
+        writeInt(frameSize, Integer.MAX_VALUE);
+
+        assertEquals(2, replay(1).size());
+    }
+
+    @Test
+    void negativeLengthIsSkipped() throws IOException {
+        long frameSize = writeFrames(3);
+        writeInt(frameSize, -1);
+
+        assertEquals(2, replay(1).size());
+    }
+
+    @Test
+    void rotateOpensNextSegmentAndDeleteRemovesReplayed() {
+        HitWriteAheadLog wal = new HitWriteAheadLog(dir, false);
+        wal.open(1);
+        wal.append(List.of(hit("/events/1", "10.0.0.1")));
+        assertEquals(1, wal.rotate());
+        wal.append(List.of(hit("/events/2", "10.0.0.2")));
+        wal.close();
+        assertEquals(List.of(1L, 2L), wal.segments());
+
+        wal.deleteUpTo(1);
+        assertEquals(List.of(2L), wal.segments());
+        assertEquals(1, replay(2).size());
+    }
+
+    /**
+     * Запись в сегмент 1 кадров одинакового размера по два посещения
+     *
+     * @return - размер кадра
+     */
+    private long writeFrames(int frames) throws IOException {
+        HitWriteAheadLog wal = new HitWriteAheadLog(dir, false);
+        wal.open(1);
+        for (int i = 0; i < frames; i++) {
+            wal.append(List.of(hit("/events/" + i, "10.0.0." + i), hit("/events/" + i, "10.0.1." + i)));
+        }
+        wal.close();
+        return Files.size(segmentFile()) / frames;
+    }
+
+    private void truncate(long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile().toFile(), "rw")) {
+            file.setLength(size);
+        }
+    }
+
+    private void writeInt(long position, int value) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile().toFile(), "rw")) {
+            file.seek(position);
+            file.writeInt(value);
+        }
+    }
+
+    private List<EndpointHit> replay(long segment) {
+        List<EndpointHit> hits = new ArrayList<>();
+        int count = new HitWriteAheadLog(dir, false).replay(segment, hits::add);
+        assertEquals(hits.size(), count);
+        return hits;
+    }
+
+    private Path segmentFile() {
+        return dir.resolve("wal-1.log");
+    }
+
+    private static EndpointHit hit(String uri, String ip) {
+        return new EndpointHit(null, "ewm-main-service", uri, ip, TIMESTAMP);
+    }
+}